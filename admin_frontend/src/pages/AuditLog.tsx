@@ -12,6 +12,7 @@ interface Audit {
   failureReason?: string;
   userAgent: string;
   createdAt: string;
+  repeatCount: number;
 }
 
 const getJWT = (): string | null => {
@@ -28,6 +29,9 @@ const getJWT = (): string | null => {
   return null;
 };
 
+// Server-side page size; older entries are fetched on demand with the returned cursor
+const PAGE_SIZE = 500;
+
 const AuditLog: React.FC = () => {
   const [logs, setLogs] = useState<Audit[]>([]);
   const [loading, setLoading] = useState(true);
@@ -37,13 +41,19 @@ const AuditLog: React.FC = () => {
   const [successFilter, setSuccessFilter] = useState<string>("");
   const [currentPage, setCurrentPage] = useState(1);
   const [itemsPerPage, setItemsPerPage] = useState(10);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
 
   useEffect(() => {
     fetchLogs();
   }, []);
 
-  const fetchLogs = async () => {
-    setLoading(true);
+  const fetchLogs = async (cursor?: string) => {
+    if (cursor) {
+      setLoadingMore(true);
+    } else {
+      setLoading(true);
+    }
     setError(null);
 
     const token = getJWT();
@@ -54,9 +64,12 @@ const AuditLog: React.FC = () => {
       return;
     }
 
+    const params = new URLSearchParams({ size: String(PAGE_SIZE) });
+    if (cursor) params.set("cursor", cursor);
+
     try {
       const response = await fetch(
-        "http://localhost:8081/api/v1/admin/audit-log",
+        `http://localhost:8081/api/v1/admin/audit-log?${params.toString()}`,
         {
           method: "GET",
           headers: {
@@ -85,8 +98,8 @@ const AuditLog: React.FC = () => {
 
       const data = await response.json();
 
-      if (Array.isArray(data)) {
-        const transformedLogs: Audit[] = data.map((log: any) => ({
+      if (data && Array.isArray(data.content)) {
+        const transformedLogs: Audit[] = data.content.map((log: any) => ({
           id: log.id,
           cognitoSub: log.cognitoSub || "N/A",
           userId: log.userId || 0,
@@ -97,8 +110,10 @@ const AuditLog: React.FC = () => {
           failureReason: log.failureReason || undefined,
           userAgent: log.userAgent || "N/A",
           createdAt: log.createdAt || "N/A",
+          repeatCount: log.repeatCount || 1,
         }));
-        setLogs(transformedLogs);
+        setLogs(prev => (cursor ? [...prev, ...transformedLogs] : transformedLogs));
+        setNextCursor(data.nextCursor ?? null);
       } else {
         setError("Invalid response format from server");
       }
@@ -107,6 +122,7 @@ const AuditLog: React.FC = () => {
       setError(msg);
     } finally {
       setLoading(false);
+      setLoadingMore(false);
     }
   };
 
@@ -171,28 +187,30 @@ const AuditLog: React.FC = () => {
   };
 
   const exportToCSV = () => {
-    const headers = ["ID", "Email", "Event Type", "IP Address", "Success", "Failure Reason", "Created At"];
-    const csvData = filteredLogs.map(log => [
-      log.id,
-      log.email,
-      log.eventType,
-      log.ipAddress,
-      log.success ? "Success" : "Failure",
-      log.failureReason || "-",
-      log.createdAt
-    ]);
-    
-    const csv = [
-      headers.join(","),
-      ...csvData.map(row => row.map(cell => `"${cell}"`).join(","))
-    ].join("\n");
-
-    const blob = new Blob([csv], { type: "text/csv" });
-    const url = URL.createObjectURL(blob);
+    const token = getJWT();
+    if (!token) {
+      setError("No JWT token found! Please log in via Cognito.");
+      return;
+    }
+
+    // A link cannot send an Authorization header; the server accepts the jwt_token cookie for the export
+    if (!document.cookie.split(";").some((cookie) => cookie.trim().startsWith("jwt_token="))) {
+      document.cookie = `jwt_token=${encodeURIComponent(token)}; path=/; max-age=3600`;
+    }
+
+    // Same filters as the table; the server applies them while streaming
+    const params = new URLSearchParams({ format: "csv" });
+    if (searchQuery.trim()) params.set("search", searchQuery.trim());
+    if (eventTypeFilter) params.set("eventType", eventTypeFilter);
+    if (successFilter) params.set("success", String(successFilter === "success"));
+
+    // Navigating to the endpoint lets the browser stream the attachment straight to disk
     const a = document.createElement("a");
-    a.href = url;
-    a.download = `audit-log-${new Date().toISOString()}.csv`;
+    a.href = `http://localhost:8081/api/v1/admin/audit-log/export?${params.toString()}`;
+    a.rel = "noopener";
+    document.body.appendChild(a);
     a.click();
+    document.body.removeChild(a);
   };
 
   return (
@@ -203,7 +221,7 @@ const AuditLog: React.FC = () => {
           <div className="flex items-center justify-between mb-2">
             <h1 className="text-4xl font-bold text-gray-900">Audit Log</h1>
             <button
-              onClick={fetchLogs}
+              onClick={() => fetchLogs()}
               className="flex items-center gap-2 px-4 py-2 bg-white border border-gray-300 rounded-lg hover:bg-gray-50 transition-colors shadow-sm"
             >
               <RefreshCw className="w-4 h-4" />
@@ -331,6 +349,15 @@ const AuditLog: React.FC = () => {
               <div className="flex items-center justify-between mt-4 pt-4 border-t border-gray-200">
                 <div className="text-sm text-gray-600">
                   Showing <span className="font-semibold text-gray-900">{startIndex + 1}-{Math.min(endIndex, filteredLogs.length)}</span> of <span className="font-semibold text-gray-900">{filteredLogs.length}</span> results
+                  {nextCursor && (
+                    <button
+                      onClick={() => fetchLogs(nextCursor)}
+                      disabled={loadingMore}
+                      className="ml-3 text-blue-600 hover:text-blue-800 font-medium disabled:opacity-50"
+                    >
+                      {loadingMore ? "Loading..." : "Load older entries"}
+                    </button>
+                  )}
                 </div>
                 <button
                   onClick={exportToCSV}
@@ -376,6 +403,11 @@ const AuditLog: React.FC = () => {
                             <span className={`px-3 py-1 inline-flex text-xs leading-5 font-semibold rounded-full ${getEventTypeColor(log.eventType)}`}>
                               {log.eventType}
                             </span>
+                            {log.repeatCount > 1 && (
+                              <span className="ml-2 text-xs text-gray-500" title="Identical events merged into this row">
+                                ×{log.repeatCount}
+                              </span>
+                            )}
                           </div>
                         </td>
                         <td className="px-6 py-4">
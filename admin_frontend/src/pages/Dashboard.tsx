@@ -80,26 +80,28 @@ const Dashboard: React.FC = () => {
       const userData = await userResponse.json();
       setUser(userData);
 
-      // Fetch audit logs for statistics
+      // Fetch audit statistics (server-side rollups) and the most recent entries
       try {
-        const auditResponse = await fetch("http://localhost:8081/api/v1/admin/audit-log", {
-          headers: {
-            "Content-Type": "application/json",
-            Authorization: `Bearer ${token}`,
-          },
-          credentials: "include",
-        });
+        const headers = {
+          "Content-Type": "application/json",
+          Authorization: `Bearer ${token}`,
+        };
+        const [statsResponse, recentResponse] = await Promise.all([
+          fetch("http://localhost:8081/api/v1/admin/audit-log/stats", { headers, credentials: "include" }),
+          fetch("http://localhost:8081/api/v1/admin/audit-log?size=5", { headers, credentials: "include" }),
+        ]);
+
+        if (statsResponse.ok) {
+          const statsData = await statsResponse.json();
+          const recentPage = recentResponse.ok ? await recentResponse.json() : null;
+          const recentData = Array.isArray(recentPage?.content) ? recentPage.content : [];
 
-        if (auditResponse.ok) {
-          const auditData = await auditResponse.json();
-          
-          // Process audit data for statistics
           const stats: AuditStats = {
-            totalLogs: auditData.length,
-            successfulLogins: auditData.filter((log: any) => log.success && log.eventType === "LOGIN").length,
-            failedLogins: auditData.filter((log: any) => !log.success && log.eventType === "LOGIN").length,
-            uniqueUsers: new Set(auditData.map((log: any) => log.email)).size,
-            recentActivities: auditData.slice(0, 5).map((log: any) => ({
+            totalLogs: statsData.totalEvents ?? 0,
+            successfulLogins: statsData.successfulLogins ?? 0,
+            failedLogins: statsData.failedLogins ?? 0,
+            uniqueUsers: statsData.uniqueUsers ?? 0,
+            recentActivities: recentData.map((log: any) => ({
               user: log.email || "Unknown",
               action: log.eventType || "UNKNOWN",
               time: formatTimeAgo(log.createdAt),
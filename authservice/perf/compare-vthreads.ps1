@@ -0,0 +1,31 @@
+<#
+Builds a markdown comparison from results/vthreads-platform.json and results/vthreads-virtual.json.
+#>
+param(
+  [string]$Platform = "results/vthreads-platform.json",
+  [string]$Virtual = "results/vthreads-virtual.json",
+  [string]$OutFile = "results/vthreads-comparison.md"
+)
+
+foreach ($f in @($Platform, $Virtual)) {
+  if (-not (Test-Path $f)) { Write-Error "Result file not found: $f"; exit 2 }
+}
+
+$p = Get-Content -Raw $Platform | ConvertFrom-Json
+$v = Get-Content -Raw $Virtual | ConvertFrom-Json
+
+$out = @()
+$out += "# Platform vs virtual threads"
+$out += "Generated: $(Get-Date -Format o)"
+$out += ""
+$out += "| VUs | platform req/s | virtual req/s | platform p99 (ms) | virtual p99 (ms) | platform errors | virtual errors |"
+$out += "|----:|---------------:|--------------:|------------------:|-----------------:|----------------:|---------------:|"
+foreach ($level in $p.levels) {
+  $other = $v.levels | Where-Object { $_.vus -eq $level.vus }
+  if (-not $other) { continue }
+  $out += ("| {0} | {1:N1} | {2:N1} | {3:N1} | {4:N1} | {5:P2} | {6:P2} |" -f `
+    $level.vus, $level.throughput, $other.throughput, $level.p99, $other.p99, $level.errorRate, $other.errorRate)
+}
+
+$out | Set-Content -Path $OutFile -Encoding UTF8
+$out | ForEach-Object { Write-Host $_ }
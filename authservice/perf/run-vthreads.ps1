@@ -0,0 +1,28 @@
+<#
+Runs the platform vs virtual thread benchmark for one mode using Docker grafana/k6.
+Start authservice first with the matching setting, e.g.
+  SPRING_THREADS_VIRTUAL_ENABLED=false  (platform)
+  SPRING_THREADS_VIRTUAL_ENABLED=true   (virtual)
+then run this script with the same -Mode. Results go to results/vthreads-<mode>.json.
+#>
+param(
+  [Parameter(Mandatory = $true)][ValidateSet("platform", "virtual")][string]$Mode,
+  [string]$EnvFile = "k6-auth.env",
+  [string]$BaseUrl = "http://host.docker.internal:8081",
+  [string]$Levels = "50,200,800",
+  [int]$StageSeconds = 60
+)
+
+$cwd = Split-Path -Parent $MyInvocation.MyCommand.Definition
+Push-Location $cwd
+
+New-Item -ItemType Directory -Force -Path results | Out-Null
+
+$envArgs = "--env BASE_URL=$BaseUrl --env MODE=$Mode --env LEVELS=$Levels --env STAGE_SECONDS=$StageSeconds"
+if (Test-Path $EnvFile) { $envArgs += " --env-file $EnvFile" } else { Write-Host "Env file $EnvFile not found — benchmarking /healthz only" }
+
+$dockerCmd = "docker run --rm -v ${PWD}:/scripts -w /scripts grafana/k6 run $envArgs vthreads-k6.js"
+Write-Host $dockerCmd
+Invoke-Expression $dockerCmd
+
+Pop-Location
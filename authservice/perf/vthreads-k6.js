@@ -0,0 +1,70 @@
+import http from 'k6/http';
+import { check } from 'k6';
+
+// Compares platform vs virtual thread mode: run once per mode against the same build,
+// then feed both summaries to compare-vthreads.ps1.
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8081';
+const AUTH_BEARER = __ENV.AUTH_BEARER || '';
+const MODE = __ENV.MODE || 'unknown';
+const LEVELS = (__ENV.LEVELS || '50,200,800').split(',').map((v) => Number(v.trim())).filter((v) => v > 0);
+const STAGE_SECONDS = Number(__ENV.STAGE_SECONDS || 60);
+const PAUSE_SECONDS = 10;
+
+// One constant-vus scenario per concurrency level, run back to back
+const scenarios = {};
+const thresholds = {};
+LEVELS.forEach((vus, i) => {
+  const name = `c${vus}`;
+  scenarios[name] = {
+    executor: 'constant-vus',
+    vus,
+    duration: `${STAGE_SECONDS}s`,
+    startTime: `${i * (STAGE_SECONDS + PAUSE_SECONDS)}s`,
+    tags: { level: name },
+  };
+  // Always-passing thresholds make k6 keep per-level submetrics in the summary
+  thresholds[`http_req_duration{level:${name}}`] = ['p(99)>=0'];
+  thresholds[`http_reqs{level:${name}}`] = ['count>=0'];
+  thresholds[`http_req_failed{level:${name}}`] = ['rate>=0'];
+});
+
+export const options = {
+  scenarios,
+  thresholds,
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+const params = {
+  headers: AUTH_BEARER
+    ? { 'Content-Type': 'application/json', Authorization: `Bearer ${AUTH_BEARER}` }
+    : { 'Content-Type': 'application/json' },
+};
+
+export default function () {
+  // /api/v1/me touches JDBC on every call; without a token fall back to the health check
+  const url = AUTH_BEARER ? `${BASE_URL}/api/v1/me` : `${BASE_URL}/healthz`;
+  const res = http.get(url, params);
+  check(res, { 'status 200': (r) => r.status === 200 });
+}
+
+export function handleSummary(data) {
+  const levels = LEVELS.map((vus) => {
+    const name = `c${vus}`;
+    const duration = data.metrics[`http_req_duration{level:${name}}`];
+    const reqs = data.metrics[`http_reqs{level:${name}}`];
+    const failed = data.metrics[`http_req_failed{level:${name}}`];
+    return {
+      vus,
+      requests: reqs ? reqs.values.count : 0,
+      throughput: reqs ? reqs.values.count / STAGE_SECONDS : 0,
+      p50: duration ? duration.values['p(50)'] : null,
+      p99: duration ? duration.values['p(99)'] : null,
+      errorRate: failed ? failed.values.rate : null,
+    };
+  });
+  const result = { mode: MODE, stageSeconds: STAGE_SECONDS, levels };
+  return {
+    [`results/vthreads-${MODE}.json`]: JSON.stringify(result, null, 2),
+    stdout: `${JSON.stringify(result, null, 2)}\n`,
+  };
+}
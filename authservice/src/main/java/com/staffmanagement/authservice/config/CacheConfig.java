@@ -0,0 +1,65 @@
+package com.staffmanagement.authservice.config;
+
+import com.staffmanagement.authservice.dto.response.UserProfileDTO;
+import com.staffmanagement.authservice.service.UserService;
+import com.staffmanagement.authservice.utils.LocalCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * In-process caches. Each one is a bean so its counters show up on the admin metrics endpoint.
+ */
+@Configuration
+public class CacheConfig {
+
+    /**
+     * Last JWT claim fingerprint synced to the database, per cognito sub.
+     */
+    @Bean
+    public LocalCache<String, UserService.SyncedClaims> jwtSyncCache(
+            @Value("${user.sync-cache.max-entries:10000}") int maxEntries,
+            @Value("${user.sync-cache.ttl-seconds:900}") long ttlSeconds) {
+        return new LocalCache<>("jwtSyncCache", maxEntries, ttlSeconds * 1000);
+    }
+
+    /**
+     * Profile DTOs by cognito sub, invalidated by every write path that changes them.
+     */
+    @Bean
+    public LocalCache<String, UserProfileDTO> userProfileCache(
+            @Value("${user.profile-cache.max-entries:10000}") int maxEntries,
+            @Value("${user.profile-cache.ttl-seconds:300}") long ttlSeconds) {
+        return new LocalCache<>("userProfileCache", maxEntries, ttlSeconds * 1000);
+    }
+
+    /**
+     * Cognito usernames by sub or email, in front of {@code app_users.cognito_username}.
+     */
+    @Bean
+    public LocalCache<String, String> cognitoUsernameCache(
+            @Value("${cognito.username-cache.max-entries:50000}") int maxEntries,
+            @Value("${cognito.username-cache.ttl-seconds:86400}") long ttlSeconds) {
+        return new LocalCache<>("cognitoUsernameCache", maxEntries, ttlSeconds * 1000);
+    }
+
+    /**
+     * Audit dictionary ids by user-agent text. Ids never change, so the TTL only ages out rare agents.
+     */
+    @Bean
+    public LocalCache<String, Integer> auditUserAgentIdCache(
+            @Value("${audit.dictionary.user-agent-cache-size:10000}") int maxEntries,
+            @Value("${audit.dictionary.user-agent-ttl-seconds:86400}") long ttlSeconds) {
+        return new LocalCache<>("auditUserAgentIdCache", maxEntries, ttlSeconds * 1000);
+    }
+
+    /**
+     * Audit dictionary user-agent texts by id, for decoding exports.
+     */
+    @Bean
+    public LocalCache<Integer, String> auditUserAgentTextCache(
+            @Value("${audit.dictionary.user-agent-cache-size:10000}") int maxEntries,
+            @Value("${audit.dictionary.user-agent-ttl-seconds:86400}") long ttlSeconds) {
+        return new LocalCache<>("auditUserAgentTextCache", maxEntries, ttlSeconds * 1000);
+    }
+}
@@ -2,6 +2,8 @@ package com.staffmanagement.authservice.config;
 
 import com.staffmanagement.authservice.handler.CognitoLogoutHandler;
 import com.staffmanagement.authservice.handler.CognitoOAuth2SuccessHandler;
+import com.staffmanagement.authservice.security.CognitoAuthoritiesConverter;
+import jakarta.servlet.http.Cookie;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,7 +12,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
-import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.logout.LogoutHandler;
 
@@ -20,8 +23,13 @@ import org.springframework.security.web.authentication.logout.LogoutHandler;
 public class SecurityConfiguration {
 
     private static final Logger log = LoggerFactory.getLogger(SecurityConfiguration.class);
+
+    // Downloaded through a plain link so the browser streams it to disk; see bearerTokenResolver()
+    private static final String AUDIT_EXPORT_PATH = "/api/v1/admin/audit-log/export";
+    private static final String JWT_COOKIE = "jwt_token";
     private final CognitoOAuth2SuccessHandler cognitoOAuth2SuccessHandler;
     private final CognitoLogoutHandler cognitoLogoutHandler;
+    private final CognitoAuthoritiesConverter cognitoAuthoritiesConverter;
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
@@ -37,6 +45,7 @@ public class SecurityConfiguration {
                 .successHandler(cognitoOAuth2SuccessHandler)
             )
             .oauth2ResourceServer(oauth2 -> oauth2
+                .bearerTokenResolver(bearerTokenResolver())
                 .jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter()))
             )
             .logout(logout -> logout
@@ -51,17 +60,35 @@ public class SecurityConfiguration {
 
     @Bean
     public JwtAuthenticationConverter jwtAuthenticationConverter() {
-        JwtGrantedAuthoritiesConverter authoritiesConverter = new JwtGrantedAuthoritiesConverter();
-        authoritiesConverter.setAuthoritiesClaimName("cognito:groups"); 
-        authoritiesConverter.setAuthorityPrefix("ROLE_");               
-
         JwtAuthenticationConverter jwtConverter = new JwtAuthenticationConverter();
-        jwtConverter.setJwtGrantedAuthoritiesConverter(authoritiesConverter);
+        jwtConverter.setJwtGrantedAuthoritiesConverter(cognitoAuthoritiesConverter);
 
-        log.info("Configured JWT converter: using 'cognito:groups' with ROLE_ prefix");
+        log.info("Configured JWT converter: 'cognito:groups' merged with DB roles, ROLE_ prefix");
         return jwtConverter;
     }
 
+    /**
+     * Reads the token from the Authorization header, and for GETs of the audit export only
+     * also from the jwt_token cookie, since a link cannot carry an Authorization header.
+     */
+    @Bean
+    public BearerTokenResolver bearerTokenResolver() {
+        DefaultBearerTokenResolver headerResolver = new DefaultBearerTokenResolver();
+        return request -> {
+            String token = headerResolver.resolve(request);
+            if (token != null || !"GET".equals(request.getMethod())
+                    || !AUDIT_EXPORT_PATH.equals(request.getRequestURI()) || request.getCookies() == null) {
+                return token;
+            }
+            for (Cookie cookie : request.getCookies()) {
+                if (JWT_COOKIE.equals(cookie.getName()) && !cookie.getValue().isBlank()) {
+                    return cookie.getValue();
+                }
+            }
+            return null;
+        };
+    }
+
     @Bean
     public LogoutHandler defaultLogoutHandler() {
         return cognitoLogoutHandler;
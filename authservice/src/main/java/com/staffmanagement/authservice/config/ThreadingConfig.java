@@ -0,0 +1,65 @@
+package com.staffmanagement.authservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+
+import java.time.Duration;
+
+/**
+ * Thread model settings.
+ * Setting {@code spring.threads.virtual.enabled=true} makes Spring Boot run Tomcat requests,
+ * {@code @Async} tasks and {@code @Scheduled} jobs on virtual threads. The beans here cover
+ * the remaining pieces: a bounded pool for outbound Cognito calls and pinning detection.
+ */
+@Configuration
+public class ThreadingConfig {
+
+    /**
+     * HTTP client for the Cognito SDK. With virtual threads there is no request thread pool
+     * left to cap concurrency, so the connection pool is the limit: callers beyond
+     * {@code max-connections} wait (without pinning their carrier) for a free connection.
+     */
+    @Bean
+    public SdkHttpClient cognitoHttpClient(
+            @Value("${cognito.http.max-connections:50}") int maxConnections,
+            @Value("${cognito.http.connection-acquisition-timeout-ms:5000}") long acquisitionTimeoutMs,
+            @Value("${cognito.http.socket-timeout-ms:10000}") long socketTimeoutMs) {
+        return ApacheHttpClient.builder()
+                .maxConnections(maxConnections)
+                .connectionAcquisitionTimeout(Duration.ofMillis(acquisitionTimeoutMs))
+                .socketTimeout(Duration.ofMillis(socketTimeoutMs))
+                .build();
+    }
+
+    /**
+     * Event-loop HTTP client for the async Cognito client, used to fan out one user's group
+     * changes in parallel. {@code max-concurrency} caps in-flight requests; callers beyond it
+     * wait for a connection without holding a thread.
+     */
+    @Bean
+    public SdkAsyncHttpClient cognitoAsyncHttpClient(
+            @Value("${cognito.http.async-max-concurrency:50}") int maxConcurrency,
+            @Value("${cognito.http.connection-acquisition-timeout-ms:5000}") long acquisitionTimeoutMs,
+            @Value("${cognito.http.socket-timeout-ms:10000}") long socketTimeoutMs) {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConcurrency)
+                .connectionAcquisitionTimeout(Duration.ofMillis(acquisitionTimeoutMs))
+                .readTimeout(Duration.ofMillis(socketTimeoutMs))
+                .writeTimeout(Duration.ofMillis(socketTimeoutMs))
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${threads.pinning.threshold-ms:20}") long thresholdMs) {
+        return new VirtualThreadPinningMonitor(Duration.ofMillis(thresholdMs));
+    }
+}
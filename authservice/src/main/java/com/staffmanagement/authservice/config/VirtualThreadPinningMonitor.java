@@ -0,0 +1,114 @@
+package com.staffmanagement.authservice.config;
+
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listens for {@code jdk.VirtualThreadPinned} JFR events: a virtual thread that blocked while
+ * holding a monitor ({@code synchronized}) or inside native code, keeping its carrier busy.
+ * Counts them per call site (the first application or driver frame) and logs new sites.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements MetricsSource {
+
+    private static final int MAX_SITES = 200;
+    private static final int TOP_SITES_REPORTED = 10;
+
+    private final Duration threshold;
+    private final LongAdder pinnedEvents = new LongAdder();
+    private final AtomicLong pinnedNanos = new AtomicLong();
+    private final AtomicLong maxPinnedNanos = new AtomicLong();
+    private final ConcurrentHashMap<String, LongAdder> bySite = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        stream.startAsync();
+        log.info("Virtual thread pinning monitor started (threshold {} ms)", threshold.toMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        long nanos = event.getDuration().toNanos();
+        pinnedEvents.increment();
+        pinnedNanos.addAndGet(nanos);
+        maxPinnedNanos.accumulateAndGet(nanos, Math::max);
+
+        String site = callSite(event.getStackTrace());
+        LongAdder counter = bySite.get(site);
+        if (counter == null) {
+            if (bySite.size() >= MAX_SITES) {
+                site = "other";
+            } else {
+                log.warn("Virtual thread pinned for {} ms at {}", nanos / 1_000_000, site);
+            }
+            counter = bySite.computeIfAbsent(site, s -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * First frame outside the JDK, which is usually the {@code synchronized} block or the
+     * driver call responsible for the pin.
+     */
+    private static String callSite(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) return "unknown";
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (!frame.isJavaFrame()) continue;
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.")) continue;
+            return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+        }
+        return "jdk-internal";
+    }
+
+    @Override
+    public String metricsName() {
+        return "virtualThreadPinning";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long events = pinnedEvents.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("thresholdMillis", threshold.toMillis());
+        metrics.put("pinnedEvents", events);
+        metrics.put("avgPinnedMillis", events == 0 ? 0.0 : pinnedNanos.get() / 1_000_000.0 / events);
+        metrics.put("maxPinnedMillis", maxPinnedNanos.get() / 1_000_000.0);
+
+        Map<String, Long> topSites = new LinkedHashMap<>();
+        bySite.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(TOP_SITES_REPORTED)
+                .forEach(e -> topSites.put(e.getKey(), e.getValue().sum()));
+        metrics.put("topSites", topSites);
+        return metrics;
+    }
+}
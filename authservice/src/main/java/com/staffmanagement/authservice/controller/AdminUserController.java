@@ -1,14 +1,29 @@
 package com.staffmanagement.authservice.controller;
 
+import com.staffmanagement.authservice.dto.common.CursorPage;
 import com.staffmanagement.authservice.dto.request.AssignRolesRequest;
 import com.staffmanagement.authservice.dto.response.AdminUserDTO;
 import com.staffmanagement.authservice.service.AdminUserService;
+import com.staffmanagement.authservice.service.GroupReconciliationService;
+import com.staffmanagement.authservice.service.StaffImportService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import com.staffmanagement.authservice.utils.ETags;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.net.URI;
 
 @RestController
 @RequestMapping("/api/v1/admin/users")
@@ -16,19 +31,48 @@ import org.springframework.web.bind.annotation.*;
 public class AdminUserController {
 
     private final AdminUserService adminUserService;
+    private final StaffImportService staffImportService;
+    private final GroupReconciliationService groupReconciliationService;
+
+    private static final CacheControl ADMIN_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
 
+    // Weak ETags over the page content: an unchanged page answers 304 and skips serialisation
     @GetMapping
     public ResponseEntity<Page<AdminUserDTO>> getUsers(
             @RequestParam(required = false) String query,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest webRequest) {
         Page<AdminUserDTO> users = adminUserService.searchUsers(query, page, size);
-        return ResponseEntity.ok(users);
+        if (webRequest.checkNotModified(ETags.weak(users.getTotalElements(), users.getContent()))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(ADMIN_CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().cacheControl(ADMIN_CACHE_CONTROL).body(users);
+    }
+
+    // Count-free slices for large directories; estimate=true adds the planner's row estimate
+    @GetMapping("/search")
+    public ResponseEntity<CursorPage<AdminUserDTO>> searchUsers(
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean estimate) {
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(ADMIN_CACHE_CONTROL)
+                    .body(adminUserService.searchUsersSlice(query, cursor, size, estimate));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<AdminUserDTO> getUser(@PathVariable Long id) {
-        return ResponseEntity.ok(adminUserService.getUser(id));
+    public ResponseEntity<AdminUserDTO> getUser(@PathVariable Long id, WebRequest webRequest) {
+        AdminUserDTO user = adminUserService.getUser(id);
+        if (webRequest.checkNotModified(ETags.weak(user))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(ADMIN_CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().cacheControl(ADMIN_CACHE_CONTROL).body(user);
     }
 
     @PatchMapping("/{id}/roles")
@@ -47,4 +91,70 @@ public class AdminUserController {
         adminUserService.resyncUserGroups(userId);
         return ResponseEntity.ok().build();
     }
+
+    // The body is streamed to disk and imported in the background; poll the Location for progress
+    @PostMapping("/import")
+    public ResponseEntity<StaffImportService.ImportStatus> importUsers(
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            @AuthenticationPrincipal Jwt jwt,
+            HttpServletRequest request) throws IOException {
+        StaffImportService.Format importFormat;
+        try {
+            importFormat = StaffImportService.Format.of(format, contentType);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.getContentLengthLong() > staffImportService.maxUploadBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        String startedBy = jwt.getClaimAsString("email") != null ? jwt.getClaimAsString("email") : jwt.getSubject();
+        StaffImportService.ImportStatus status;
+        try {
+            status = staffImportService.start(request.getInputStream(), importFormat, startedBy);
+        } catch (StaffImportService.UploadTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/admin/users/import/" + status.id()))
+                .body(status);
+    }
+
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<StaffImportService.ImportStatus> getImportStatus(@PathVariable String jobId) {
+        return staffImportService.status(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/import/{jobId}/errors")
+    public ResponseEntity<Resource> getImportErrors(@PathVariable String jobId) {
+        return staffImportService.errorReport(jobId)
+                .<ResponseEntity<Resource>>map(path -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                        .body(new FileSystemResource(path)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Pool-wide Cognito group repair; dryRun=true only reports the differences
+    @PostMapping("/reconcile-groups")
+    public ResponseEntity<GroupReconciliationService.ReconciliationStatus> reconcileGroups(
+            @RequestParam(defaultValue = "false") boolean dryRun,
+            @AuthenticationPrincipal Jwt jwt) {
+        String requestedBy = jwt.getClaimAsString("email") != null ? jwt.getClaimAsString("email") : jwt.getSubject();
+        try {
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/v1/admin/users/reconcile-groups"))
+                    .body(groupReconciliationService.start(dryRun, "manual:" + requestedBy));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @GetMapping("/reconcile-groups")
+    public ResponseEntity<GroupReconciliationService.ReconciliationStatus> getReconciliationStatus() {
+        return groupReconciliationService.status()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
 }
@@ -1,76 +1,120 @@
 package com.staffmanagement.authservice.controller;
 
-import com.staffmanagement.authservice.entity.LoginAudit;
+import com.staffmanagement.authservice.dto.common.CursorPage;
+import com.staffmanagement.authservice.dto.request.AuditLogFilter;
+import com.staffmanagement.authservice.dto.response.AuditStatsDTO;
 import com.staffmanagement.authservice.dto.response.LoginAuditDTO;
-import com.staffmanagement.authservice.repository.LoginAuditRepository;
+import com.staffmanagement.authservice.service.AuditLogExportService;
+import com.staffmanagement.authservice.service.AuditLogQueryService;
+import com.staffmanagement.authservice.service.AuditRollupService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/v1/admin/audit-log")
 @RequiredArgsConstructor
 public class AuditController {
 
-    private final LoginAuditRepository loginAuditRepository;
+    private final AuditLogQueryService auditLogQueryService;
+    private final AuditRollupService auditRollupService;
+    private final AuditLogExportService auditLogExportService;
 
     @GetMapping
-    public ResponseEntity<List<LoginAuditDTO>> getAuditLogs(
+    public ResponseEntity<CursorPage<LoginAuditDTO>> getAuditLogs(
             @RequestParam(required = false, name = "user_id") Long userId,
+            @RequestParam(required = false, name = "rangeStart")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime rangeStart,
+            @RequestParam(required = false, name = "rangeEnd")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime rangeEnd,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size
+    ) {
+        AuditLogFilter filter = new AuditLogFilter(userId, rangeStart, rangeEnd);
+        try {
+            return ResponseEntity.ok(auditLogQueryService.getAuditLogs(filter, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Dashboard statistics for a time range, answered from the hourly/daily rollups.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<AuditStatsDTO> getAuditStats(
             @RequestParam(required = false, name = "rangeStart")
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime rangeStart,
             @RequestParam(required = false, name = "rangeEnd")
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime rangeEnd
     ) {
-        List<LoginAudit> audits;
+        return ResponseEntity.ok(auditRollupService.getStats(rangeStart, rangeEnd));
+    }
 
-        if (userId != null && rangeStart != null && rangeEnd != null) {
-            audits = loginAuditRepository.findByUserIdAndCreatedAtBetween(userId, rangeStart, rangeEnd);
-        } else if (userId != null) {
-            audits = loginAuditRepository.findByUserIdOrderByCreatedAtDesc(userId);
-        } else if (rangeStart != null && rangeEnd != null) {
-            audits = loginAuditRepository.findByCreatedAtBetweenOrderByCreatedAtDesc(rangeStart, rangeEnd);
-        } else {
-            audits = loginAuditRepository.findAllByOrderByCreatedAtDesc();
+    /**
+     * Streams every audit row matching the list filters as CSV or NDJSON.
+     * The body is gzip-compressed when the client accepts it or asks for it with {@code gzip=true}.
+     */
+    @GetMapping("/export")
+    public void exportAuditLogs(
+            @RequestParam(required = false, name = "user_id") Long userId,
+            @RequestParam(required = false, name = "rangeStart")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime rangeStart,
+            @RequestParam(required = false, name = "rangeEnd")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime rangeEnd,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) Boolean success,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false, defaultValue = "csv") String format,
+            @RequestParam(required = false, defaultValue = "false") boolean gzip,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        AuditLogExportService.Format exportFormat;
+        try {
+            exportFormat = AuditLogExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
         }
 
-        List<LoginAuditDTO> dtos = audits.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(dtos);
-    }
+        boolean compress = gzip || (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip"));
+        String filename = "audit-log-" + LocalDateTime.now().withNano(0).toString().replace(':', '-')
+                + "." + exportFormat.getExtension();
+        response.setContentType(exportFormat.getContentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        if (compress) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
 
-    // Add this method here ⬇️
-    private LoginAuditDTO convertToDTO(LoginAudit audit) {
-    LoginAuditDTO.LoginAuditDTOBuilder builder = LoginAuditDTO.builder()
-            .id(audit.getId())
-            .email(audit.getEmail())  // This comes from audit.email column
-            .eventType(audit.getEventType())
-            .ipAddress(audit.getIpAddress())
-            .userAgent(audit.getUserAgent())
-            .success(audit.isSuccess())
-            .failureReason(audit.getFailureReason())
-            .createdAt(audit.getCreatedAt())
-            .cognitoSub(audit.getCognitoSub());  // This comes from audit.cognitoSub column
-    
-    // Try to get user info from the relationship OR from the audit columns
-    if (audit.getUser() != null) {
-        builder.userId(audit.getUser().getId())
-               .userEmail(audit.getUser().getEmail())
-               .displayName(audit.getUser().getDisplayName());
-    } else {
-        // Fallback: if no user relationship, use the audit's own fields
-        builder.userId(null)
-               .userEmail(audit.getEmail())  // Use email from audit record
-               .displayName(null);
+        AuditLogFilter filter = new AuditLogFilter(userId, rangeStart, rangeEnd, eventType, success, search);
+        OutputStream out = response.getOutputStream();
+        try {
+            if (compress) {
+                try (GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192)) {
+                    auditLogExportService.export(filter, exportFormat, gzipOut);
+                }
+            } else {
+                auditLogExportService.export(filter, exportFormat, out);
+            }
+            out.flush();
+        } catch (UncheckedIOException e) {
+            // The client went away; the cursor has already been closed
+            log.info("Audit export aborted: {}", e.getCause().getMessage());
+        }
     }
-    
-    return builder.build();
 }
-}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.staffmanagement.authservice.controller;
+
+import com.staffmanagement.authservice.utils.MetricsSource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequestMapping("/api/v1/admin/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final List<MetricsSource> metricsSources;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Map<String, Object>>> getMetrics() {
+        Map<String, Map<String, Object>> metrics = new TreeMap<>();
+        for (MetricsSource source : metricsSources) {
+            metrics.put(source.metricsName(), source.metrics());
+        }
+        return ResponseEntity.ok(metrics);
+    }
+}
@@ -1,13 +1,15 @@
 package com.staffmanagement.authservice.controller;
 
-import com.staffmanagement.authservice.entity.Role;
-import com.staffmanagement.authservice.repository.RoleRepository;
+import com.staffmanagement.authservice.service.RoleCatalog;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -15,11 +17,21 @@ import java.util.List;
 @RequiredArgsConstructor
 public class RoleController {
 
-    private final RoleRepository roleRepository;
+    private final RoleCatalog roleCatalog;
 
+    @Value("${roles.catalog.max-age-seconds:60}")
+    private long maxAgeSeconds;
+
+    /**
+     * Served from the role catalog. A request whose If-None-Match matches the ETag gets a 304
+     * from Spring's conditional request handling, without a body.
+     */
     @GetMapping
-    public ResponseEntity<List<Role>> listRoles() {
-        List<Role> roles = roleRepository.findAll();
-        return ResponseEntity.ok(roles);
+    public ResponseEntity<List<RoleCatalog.RoleEntry>> listRoles() {
+        RoleCatalog.Snapshot snapshot = roleCatalog.snapshot();
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePrivate().mustRevalidate())
+                .body(snapshot.roles());
     }
 }
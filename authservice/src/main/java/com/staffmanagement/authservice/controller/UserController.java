@@ -6,6 +6,8 @@ import com.staffmanagement.authservice.service.AuditService;
 import com.staffmanagement.authservice.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
@@ -14,6 +16,7 @@ import org.springframework.security.oauth2.client.authentication.OAuth2Authentic
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.security.core.Authentication;
 
 
@@ -30,13 +33,17 @@ public class UserController {
     private final UserService userService;
     private final AuditService auditService;
 
+    // Clients may store the profile but must revalidate it on every use
+    private static final CacheControl PROFILE_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     // ==========================
     // JWT-based endpoint (for Flutter/mobile apps)
     // ==========================
     @GetMapping
     public ResponseEntity<UserProfileDTO> getCurrentUser(
             @AuthenticationPrincipal Jwt jwt,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            WebRequest webRequest) {
 
         String cognitoSub = jwt.getClaimAsString("sub");
         String email = jwt.getClaimAsString("email");
@@ -60,10 +67,10 @@ public class UserController {
     );
 
         // Get the user profile (will now exist in DB)
-        UserProfileDTO profile = userService.getCurrentUser(cognitoSub);
+        ResponseEntity<UserProfileDTO> response = conditionalProfile(cognitoSub, webRequest);
         log.info("User profile retrieved for {}", email);
 
-        return ResponseEntity.ok(profile);
+        return response;
     }
 
     // ==========================
@@ -71,7 +78,7 @@ public class UserController {
     // Returns full UserProfile when a session is active so SPA can show displayName/email
     // ==========================
     @GetMapping("/session")
-    public ResponseEntity<?> getCurrentUserSession(Authentication authentication) {
+    public ResponseEntity<?> getCurrentUserSession(Authentication authentication, WebRequest webRequest) {
         if (authentication == null) {
             return ResponseEntity.status(401).body(Map.of("error", "No active session"));
         }
@@ -97,8 +104,7 @@ public class UserController {
                 return ResponseEntity.status(401).body(Map.of("error", "Unable to resolve user identity"));
             }
 
-            UserProfileDTO profile = userService.getCurrentUser(cognitoSub);
-            return ResponseEntity.ok(profile);
+            return conditionalProfile(cognitoSub, webRequest);
         } catch (Exception e) {
             log.error("Failed to resolve session user: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch user profile"));
@@ -193,8 +199,22 @@ public class UserController {
     // Lookup user by cognito sub (useful for SPA when principal exposes sub only)
     // ==========================
     @GetMapping("/by-sub/{cognitoSub}")
-    public ResponseEntity<UserProfileDTO> getUserBySub(@PathVariable("cognitoSub") String cognitoSub) {
-        UserProfileDTO profile = userService.getCurrentUser(cognitoSub);
-        return ResponseEntity.ok(profile);
+    public ResponseEntity<UserProfileDTO> getUserBySub(@PathVariable("cognitoSub") String cognitoSub,
+                                                       WebRequest webRequest) {
+        return conditionalProfile(cognitoSub, webRequest);
+    }
+
+    /**
+     * Answers 304 when the client's validators still match, before the profile DTO is copied
+     * or serialised. checkNotModified also writes the ETag and Last-Modified headers.
+     */
+    private ResponseEntity<UserProfileDTO> conditionalProfile(String cognitoSub, WebRequest webRequest) {
+        UserService.ProfileVersion version = userService.profileVersion(cognitoSub);
+        if (webRequest.checkNotModified(version.etag(), version.lastModifiedMillis())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(PROFILE_CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(PROFILE_CACHE_CONTROL)
+                .body(userService.getCurrentUser(cognitoSub));
     }
 }
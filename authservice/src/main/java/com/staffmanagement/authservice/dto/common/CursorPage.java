@@ -0,0 +1,26 @@
+package com.staffmanagement.authservice.dto.common;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated result. Pass {@code nextCursor} back to get the following page;
+ * it is null on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    // Planner estimate of the total, only when requested; never an exact count
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long estimatedTotal;
+}
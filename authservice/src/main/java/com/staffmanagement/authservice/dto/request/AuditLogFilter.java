@@ -0,0 +1,16 @@
+package com.staffmanagement.authservice.dto.request;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters shared by the audit log endpoints. Every field is optional.
+ * {@code eventType}, {@code success} and {@code search} are applied by the export,
+ * which mirrors the filters the audit log page applies to the rows it has loaded.
+ */
+public record AuditLogFilter(Long userId, LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                             String eventType, Boolean success, String search) {
+
+    public AuditLogFilter(Long userId, LocalDateTime rangeStart, LocalDateTime rangeEnd) {
+        this(userId, rangeStart, rangeEnd, null, null, null);
+    }
+}
@@ -0,0 +1,35 @@
+package com.staffmanagement.authservice.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditStatsDTO {
+    // Effective range after aligning to hour buckets and applying the default range
+    private LocalDateTime rangeStart;
+    private LocalDateTime rangeEnd;
+
+    private long totalEvents;
+    private long successfulLogins;
+    private long failedLogins;
+    private long uniqueUsers;
+    private List<EventCount> byEventType;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EventCount {
+        private String eventType;
+        private boolean success;
+        private long count;
+    }
+}
@@ -12,6 +12,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 public class LoginAuditDTO {
+    // Field order defines the all-args constructor used by the JPQL projection in LoginAuditRepositoryImpl
     private Long id;
     
     // User info
@@ -28,4 +29,5 @@ public class LoginAuditDTO {
     private boolean success;
     private String failureReason;
     private LocalDateTime createdAt;
+    private int repeatCount;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.staffmanagement.authservice.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -9,7 +10,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class UserProfileDTO {
@@ -26,4 +27,10 @@ public class UserProfileDTO {
     private List<String> roles;
     private LocalDateTime createdAt;
     private LocalDateTime lastLoginAt;
+
+    // Validators for conditional GETs, not part of the representation
+    @JsonIgnore
+    private LocalDateTime updatedAt;
+    @JsonIgnore
+    private int roleVersion;
 }
\ No newline at end of file
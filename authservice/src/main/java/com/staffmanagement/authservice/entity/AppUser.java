@@ -14,7 +14,8 @@ import java.util.stream.Collectors;
 @Table(name = "app_users", indexes = {
         @Index(name = "idx_app_users_cognito_sub", columnList = "cognito_sub"),
         @Index(name = "idx_app_users_email", columnList = "email"),
-        @Index(name = "idx_app_users_is_active", columnList = "is_active")
+        @Index(name = "idx_app_users_is_active", columnList = "is_active"),
+        @Index(name = "idx_app_users_updated_at", columnList = "updated_at")
 })
 @Getter
 @Setter
@@ -36,6 +37,10 @@ public class AppUser {
     @Column(unique = true, length = 100)
     private String username;
 
+    // Username in the Cognito pool, which admin API calls require; learned at login or first lookup
+    @Column(name = "cognito_username", length = 255)
+    private String cognitoUsername;
+
     @Column(name = "display_name", length = 255)
     private String displayName;
 
@@ -73,6 +78,11 @@ public class AppUser {
     @Column(name = "last_login_at")
     private LocalDateTime lastLoginAt;
 
+    // Bumped whenever role assignments change, so profile validators see role edits
+    @Builder.Default
+    @Column(name = "role_version", columnDefinition = "INTEGER NOT NULL DEFAULT 0")
+    private int roleVersion = 0;
+
     @Column(name = "created_by")
     private String createdBy;
 
@@ -0,0 +1,26 @@
+package com.staffmanagement.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Dictionary of audit event type names; login_audit stores the small id instead of the string.
+ */
+@Entity
+@Table(name = "audit_event_type", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_audit_event_type_name", columnNames = "name")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditEventType {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Short id;
+
+    @Column(name = "name", nullable = false, length = 50)
+    private String name; // LOGIN, LOGOUT, LOGIN_FAILED, MFA_CHALLENGE
+}
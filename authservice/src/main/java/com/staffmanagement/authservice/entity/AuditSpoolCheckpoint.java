@@ -0,0 +1,31 @@
+package com.staffmanagement.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Replay position of a local audit spool.
+ * Updated in the same transaction as the audit rows replayed from the spool, so a
+ * record is never written twice even if the process dies mid-replay.
+ */
+@Entity
+@Table(name = "audit_spool_checkpoint")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditSpoolCheckpoint {
+
+    @Id
+    @Column(name = "spool_id", length = 100)
+    private String spoolId;
+
+    @Column(name = "position", nullable = false)
+    private long position; // byte offset of the next record to replay, across all segments
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,39 @@
+package com.staffmanagement.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A spooled audit event the database rejected as invalid, set aside so replay can move past it.
+ * The event is kept as text because it could not be stored in {@code login_audit}.
+ */
+@Entity
+@Table(name = "audit_spool_quarantine")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditSpoolQuarantine {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "spool_id", nullable = false, length = 100)
+    private String spoolId;
+
+    @Column(name = "position", nullable = false)
+    private long position; // byte offset of the record in the spool
+
+    @Column(name = "event", nullable = false, columnDefinition = "TEXT")
+    private String event;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,30 @@
+package com.staffmanagement.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Dictionary of distinct User-Agent strings referenced by login_audit.
+ * Uniqueness is enforced on the md5 of the text, since user agents can exceed the btree key size.
+ */
+@Entity
+@Table(name = "audit_user_agent", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_audit_user_agent_hash", columnNames = "ua_hash")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditUserAgent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "ua_hash", nullable = false, length = 32)
+    private String uaHash;
+
+    @Column(name = "user_agent", nullable = false, columnDefinition = "TEXT")
+    private String userAgent;
+}
@@ -0,0 +1,53 @@
+package com.staffmanagement.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A pending Cognito group membership change, written in the same transaction as the role
+ * change that caused it and applied by the group sync dispatcher after commit.
+ * Rows are deleted once applied; a null {@code nextAttemptAt} marks an entry that gave up.
+ */
+@Entity
+@Table(name = "group_sync_outbox", indexes = {
+        @Index(name = "idx_group_sync_outbox_due", columnList = "next_attempt_at, id"),
+        @Index(name = "idx_group_sync_outbox_member", columnList = "cognito_username, group_name"),
+        @Index(name = "idx_group_sync_outbox_user", columnList = "user_id, group_name")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GroupSyncOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "cognito_username", nullable = false, length = 255)
+    private String cognitoUsername;
+
+    @Column(name = "group_name", nullable = false, length = 128)
+    private String groupName;
+
+    @Column(name = "operation", nullable = false, length = 10)
+    private String operation; // ADD or REMOVE
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -8,7 +8,10 @@ import org.hibernate.annotations.Type;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "login_audit", schema = "public")
+@Table(name = "login_audit", schema = "public", indexes = {
+        @Index(name = "idx_login_audit_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_login_audit_user_created_at", columnList = "user_id, created_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -32,14 +35,17 @@ public class LoginAudit {
     @Column(name = "email")
     private String email;
 
-    @Column(name = "event_type", nullable = false, length = 50)
-    private String eventType; // LOGIN, LOGOUT, LOGIN_FAILED, MFA_CHALLENGE
+    // Dictionary-encoded; NOT NULL is added by AuditDictionary once existing rows are migrated
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "event_type_id", foreignKey = @ForeignKey(name = "fk_login_audit_event_type"))
+    private AuditEventType eventType;
 
     @Column(name = "ip_address", length = 45)
     private String ipAddress;
 
-    @Column(name = "user_agent", columnDefinition = "TEXT")
-    private String userAgent;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_agent_id", foreignKey = @ForeignKey(name = "fk_login_audit_user_agent"))
+    private AuditUserAgent userAgent;
 
     @Column(name = "device_info", columnDefinition = "JSONB")
     private String deviceInfo;
@@ -54,6 +60,11 @@ public class LoginAudit {
     @Column(name = "failure_reason")
     private String failureReason;
 
+    // Number of identical events merged into this row by the audit policy
+    @Builder.Default
+    @Column(name = "repeat_count", columnDefinition = "INTEGER NOT NULL DEFAULT 1")
+    private int repeatCount = 1;
+
     @Column(name = "session_id")
     private String sessionId;
 
@@ -0,0 +1,31 @@
+package com.staffmanagement.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * One row per user seen on a given day, used to count unique users over a date range.
+ */
+@Entity
+@Table(name = "login_audit_daily_user", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_login_audit_daily_user", columnNames = {"activity_date", "user_key"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoginAuditDailyUser {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "activity_date", nullable = false)
+    private LocalDate activityDate;
+
+    @Column(name = "user_key", nullable = false)
+    private String userKey; // email, or cognito sub when the event has no email
+}
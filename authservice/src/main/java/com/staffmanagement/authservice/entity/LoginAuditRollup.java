@@ -0,0 +1,45 @@
+package com.staffmanagement.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pre-aggregated audit counters per hour or day bucket, event type and outcome.
+ * Maintained incrementally by the audit writer so statistics never scan login_audit.
+ */
+@Entity
+@Table(name = "login_audit_rollup", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_login_audit_rollup_bucket",
+                columnNames = {"granularity", "bucket_start", "event_type", "success"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoginAuditRollup {
+
+    public static final String HOUR = "HOUR";
+    public static final String DAY = "DAY";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "granularity", nullable = false, length = 4)
+    private String granularity; // HOUR or DAY
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "event_type", nullable = false, length = 50)
+    private String eventType;
+
+    @Column(name = "success", nullable = false)
+    private boolean success;
+
+    @Column(name = "event_count", nullable = false)
+    private long eventCount;
+}
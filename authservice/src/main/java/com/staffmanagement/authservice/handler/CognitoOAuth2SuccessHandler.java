@@ -1,5 +1,6 @@
 package com.staffmanagement.authservice.handler;
 
+import com.staffmanagement.authservice.security.AuthorityIndex;
 import com.staffmanagement.authservice.service.AuditService;
 import com.staffmanagement.authservice.service.CognitoUserService;
 import jakarta.servlet.ServletException;
@@ -29,7 +30,7 @@ public class CognitoOAuth2SuccessHandler implements AuthenticationSuccessHandler
 
     private final CognitoUserService cognitoUserService;
     private final AuditService auditService;
-    private final com.staffmanagement.authservice.service.UserService userService;
+    private final AuthorityIndex authorityIndex;
 
     @org.springframework.beans.factory.annotation.Value("${cognito.allowed-groups:}")
     private String allowedGroupsCsv;
@@ -67,14 +68,7 @@ public class CognitoOAuth2SuccessHandler implements AuthenticationSuccessHandler
 
         // If no groups present in token, fallback to DB roles for the user
         if (userGroups.isEmpty() && cognitoSub != null) {
-            try {
-                com.staffmanagement.authservice.dto.response.UserProfileDTO profile = userService.getCurrentUser(cognitoSub);
-                if (profile != null && profile.getRoles() != null) {
-                    userGroups.addAll(profile.getRoles());
-                }
-            } catch (Exception e) {
-                log.debug("No DB profile found for sub {} while checking login groups", cognitoSub);
-            }
+            userGroups.addAll(authorityIndex.roleNames(authorityIndex.roleBits(cognitoSub)));
         }
 
         boolean allowed = false;
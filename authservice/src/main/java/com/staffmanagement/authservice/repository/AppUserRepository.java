@@ -1,15 +1,20 @@
 package com.staffmanagement.authservice.repository;
 
 import com.staffmanagement.authservice.entity.AppUser;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
-public interface AppUserRepository extends JpaRepository<AppUser, Long> {
+public interface AppUserRepository extends JpaRepository<AppUser, Long>, AppUserRepositoryCustom {
 
     Optional<AppUser> findByEmail(String email);
 
@@ -19,5 +24,28 @@ public interface AppUserRepository extends JpaRepository<AppUser, Long> {
 
     boolean existsByEmail(String email);
 
-    Page<AppUser> findByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCase(String username, String email, Pageable pageable);
+    // Fetch plans: user, user_roles and roles in one joined statement
+    @EntityGraph(attributePaths = {"userRoles", "userRoles.role"})
+    Optional<AppUser> findWithRolesByCognitoSub(String cognitoSub);
+
+    @EntityGraph(attributePaths = {"userRoles", "userRoles.role"})
+    Optional<AppUser> findWithRolesById(Long id);
+
+    // Projections for list pages; role names are fetched separately for the whole page
+    @Query(value = "select new com.staffmanagement.authservice.repository.UserSummary(" +
+            "u.id, u.email, u.username, u.isActive, u.createdAt, u.lastLoginAt) from AppUser u",
+            countQuery = "select count(u) from AppUser u")
+    Page<UserSummary> findSummaries(Pageable pageable);
+
+    @Query(value = "select new com.staffmanagement.authservice.repository.UserSummary(" +
+            "u.id, u.email, u.username, u.isActive, u.createdAt, u.lastLoginAt) from AppUser u " +
+            "where lower(u.username) like :pattern escape '\\' or lower(u.email) like :pattern escape '\\'",
+            countQuery = "select count(u) from AppUser u " +
+            "where lower(u.username) like :pattern escape '\\' or lower(u.email) like :pattern escape '\\'")
+    Page<UserSummary> searchSummaries(@Param("pattern") String pattern, Pageable pageable);
+
+    // Atomic so concurrent role edits by two admins cannot lose a bump
+    @Modifying
+    @Query("update AppUser u set u.roleVersion = u.roleVersion + 1, u.updatedAt = :now where u.id = :id")
+    int bumpRoleVersion(@Param("id") Long id, @Param("now") LocalDateTime now);
 }
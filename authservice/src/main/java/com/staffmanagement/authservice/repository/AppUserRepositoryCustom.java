@@ -0,0 +1,27 @@
+package com.staffmanagement.authservice.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AppUserRepositoryCustom {
+
+    /**
+     * Loads up to {@code limit} users newest first, starting strictly after the
+     * (createdAt, id) cursor when one is given.
+     */
+    List<UserSummary> findSummariesAfter(LocalDateTime cursorCreatedAt, Long cursorId, int limit);
+
+    /**
+     * Loads up to {@code limit} users whose username, email or display name contains the
+     * lowercased pattern or, when {@code fuzzy}, is trigram-similar to the query. Results are
+     * ordered by similarity then id, starting strictly after the (score, id) cursor when one is given.
+     */
+    List<UserSearchHit> searchRanked(String query, String pattern, boolean fuzzy,
+                                     Float cursorScore, Long cursorId, int limit);
+
+    /**
+     * Row count the planner expects for the listing or search, without counting. Null when
+     * the table has not been analysed yet.
+     */
+    Long estimateCount(String query, String pattern, boolean fuzzy);
+}
@@ -0,0 +1,115 @@
+package com.staffmanagement.authservice.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AppUserRepositoryImpl implements AppUserRepositoryCustom {
+
+    private static final String SUMMARY_COLUMNS =
+            "u.id, u.email, u.username, u.is_active, u.created_at, u.last_login_at";
+
+    // Each predicate matches one of the trigram expression indexes, so the planner can BitmapOr them
+    private static final String CONTAINS =
+            "lower(u.username) LIKE ? OR lower(u.email) LIKE ? OR lower(u.display_name) LIKE ?";
+    private static final String SIMILAR =
+            " OR lower(u.username) % ? OR lower(u.email) % ? OR lower(u.display_name) % ?";
+    private static final String SCORE =
+            "GREATEST(similarity(lower(u.username), ?), similarity(lower(u.email), ?), " +
+            "similarity(lower(u.display_name), ?))";
+
+    private static final RowMapper<UserSummary> SUMMARY = (rs, n) -> new UserSummary(
+            rs.getLong("id"),
+            rs.getString("email"),
+            rs.getString("username"),
+            rs.getBoolean("is_active"),
+            toLocalDateTime(rs.getTimestamp("created_at")),
+            toLocalDateTime(rs.getTimestamp("last_login_at")));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public AppUserRepositoryImpl(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public List<UserSummary> findSummariesAfter(LocalDateTime cursorCreatedAt, Long cursorId, int limit) {
+        if (cursorCreatedAt == null) {
+            return jdbcTemplate.query("SELECT " + SUMMARY_COLUMNS + " FROM app_users u " +
+                    "ORDER BY u.created_at DESC, u.id DESC LIMIT ?", SUMMARY, limit);
+        }
+        return jdbcTemplate.query("SELECT " + SUMMARY_COLUMNS + " FROM app_users u " +
+                        "WHERE (u.created_at, u.id) < (?, ?) ORDER BY u.created_at DESC, u.id DESC LIMIT ?",
+                SUMMARY, Timestamp.valueOf(cursorCreatedAt), cursorId, limit);
+    }
+
+    @Override
+    public List<UserSearchHit> searchRanked(String query, String pattern, boolean fuzzy,
+                                            Float cursorScore, Long cursorId, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM (SELECT ").append(SUMMARY_COLUMNS).append(", ");
+        if (fuzzy) {
+            sql.append(SCORE);
+            addTimes(args, query, 3);
+        } else {
+            sql.append("0::real");
+        }
+        sql.append(" AS score FROM app_users u WHERE ").append(matchPredicate(query, pattern, fuzzy, args)).append(") m");
+        if (cursorScore != null) {
+            sql.append(" WHERE (m.score, m.id) < (?::real, ?)");
+            args.add(cursorScore);
+            args.add(cursorId);
+        }
+        sql.append(" ORDER BY m.score DESC, m.id DESC LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(),
+                (rs, n) -> new UserSearchHit(SUMMARY.mapRow(rs, n), rs.getFloat("score")),
+                args.toArray());
+    }
+
+    @Override
+    public Long estimateCount(String query, String pattern, boolean fuzzy) {
+        if (query == null) {
+            Long tuples = jdbcTemplate.queryForObject(
+                    "SELECT reltuples::bigint FROM pg_class WHERE oid = 'app_users'::regclass", Long.class);
+            return tuples == null || tuples < 0 ? null : tuples;
+        }
+        List<Object> args = new ArrayList<>();
+        String sql = "EXPLAIN (FORMAT JSON) SELECT 1 FROM app_users u WHERE " + matchPredicate(query, pattern, fuzzy, args);
+        String plan = jdbcTemplate.queryForObject(sql, String.class, args.toArray());
+        try {
+            JsonNode rows = objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows");
+            return rows.isMissingNode() ? null : rows.asLong();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String matchPredicate(String query, String pattern, boolean fuzzy, List<Object> args) {
+        addTimes(args, pattern, 3);
+        if (!fuzzy) {
+            return "(" + CONTAINS + ")";
+        }
+        addTimes(args, query, 3);
+        return "(" + CONTAINS + SIMILAR + ")";
+    }
+
+    private static void addTimes(List<Object> args, Object value, int times) {
+        for (int i = 0; i < times; i++) {
+            args.add(value);
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
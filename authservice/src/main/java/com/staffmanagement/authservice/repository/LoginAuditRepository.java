@@ -8,7 +8,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface LoginAuditRepository extends JpaRepository<LoginAudit, Long> {
+public interface LoginAuditRepository extends JpaRepository<LoginAudit, Long>, LoginAuditRepositoryCustom {
 
     List<LoginAudit> findByUserIdOrderByCreatedAtDesc(Long userId);
 
@@ -19,6 +19,5 @@ public interface LoginAuditRepository extends JpaRepository<LoginAudit, Long> {
     List<LoginAudit> findByUserIdAndCreatedAtBetween(Long userId, LocalDateTime start, LocalDateTime end);
 
     List<LoginAudit> findTop100ByOrderByCreatedAtDesc();
-    List<LoginAudit> findAllByOrderByCreatedAtDesc();
 
 }
@@ -0,0 +1,16 @@
+package com.staffmanagement.authservice.repository;
+
+import com.staffmanagement.authservice.dto.request.AuditLogFilter;
+import com.staffmanagement.authservice.dto.response.LoginAuditDTO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface LoginAuditRepositoryCustom {
+
+    /**
+     * Loads up to {@code limit} audit rows newest first, starting strictly after the
+     * (createdAt, id) cursor when one is given. Rows are projected straight into DTOs.
+     */
+    List<LoginAuditDTO> findPage(AuditLogFilter filter, LocalDateTime cursorCreatedAt, Long cursorId, int limit);
+}
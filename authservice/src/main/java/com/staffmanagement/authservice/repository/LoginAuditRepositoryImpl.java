@@ -0,0 +1,64 @@
+package com.staffmanagement.authservice.repository;
+
+import com.staffmanagement.authservice.dto.request.AuditLogFilter;
+import com.staffmanagement.authservice.dto.response.LoginAuditDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoginAuditRepositoryImpl implements LoginAuditRepositoryCustom {
+
+    // Single query: user and dictionary columns come from joins, so no per-row lazy loads
+    private static final String SELECT_DTO =
+            "select new com.staffmanagement.authservice.dto.response.LoginAuditDTO(" +
+            "a.id, u.id, a.cognitoSub, coalesce(u.email, a.email), u.displayName, " +
+            "a.email, et.name, a.ipAddress, ua.userAgent, a.success, a.failureReason, a.createdAt, a.repeatCount) " +
+            "from LoginAudit a left join a.user u left join a.eventType et left join a.userAgent ua";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<LoginAuditDTO> findPage(AuditLogFilter filter, LocalDateTime cursorCreatedAt, Long cursorId, int limit) {
+        List<String> predicates = new ArrayList<>();
+        if (filter.userId() != null) {
+            predicates.add("u.id = :userId");
+        }
+        if (filter.rangeStart() != null) {
+            predicates.add("a.createdAt >= :rangeStart");
+        }
+        if (filter.rangeEnd() != null) {
+            predicates.add("a.createdAt <= :rangeEnd");
+        }
+        if (cursorCreatedAt != null) {
+            predicates.add("(a.createdAt < :cursorCreatedAt or (a.createdAt = :cursorCreatedAt and a.id < :cursorId))");
+        }
+
+        StringBuilder jpql = new StringBuilder(SELECT_DTO);
+        if (!predicates.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", predicates));
+        }
+        jpql.append(" order by a.createdAt desc, a.id desc");
+
+        TypedQuery<LoginAuditDTO> query = entityManager.createQuery(jpql.toString(), LoginAuditDTO.class);
+        if (filter.userId() != null) {
+            query.setParameter("userId", filter.userId());
+        }
+        if (filter.rangeStart() != null) {
+            query.setParameter("rangeStart", filter.rangeStart());
+        }
+        if (filter.rangeEnd() != null) {
+            query.setParameter("rangeEnd", filter.rangeEnd());
+        }
+        if (cursorCreatedAt != null) {
+            query.setParameter("cursorCreatedAt", cursorCreatedAt);
+            query.setParameter("cursorId", cursorId);
+        }
+        query.setMaxResults(limit);
+        return query.getResultList();
+    }
+}
@@ -0,0 +1,7 @@
+package com.staffmanagement.authservice.repository;
+
+/**
+ * One role assignment as (user id, role name), for joining role names onto a page of users.
+ */
+public record UserRoleName(Long userId, String roleName) {
+}
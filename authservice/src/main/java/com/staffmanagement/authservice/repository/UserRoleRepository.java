@@ -2,10 +2,14 @@ package com.staffmanagement.authservice.repository;
 
 import com.staffmanagement.authservice.entity.AppUser;
 import com.staffmanagement.authservice.entity.UserRole;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import com.staffmanagement.authservice.entity.Role;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,5 +23,10 @@ public interface UserRoleRepository extends JpaRepository<UserRole, Long> {
     void deleteByUserIdAndRoleId(Long userId, Long roleId);
     void deleteAllByUser(AppUser user);
     Optional<UserRole> findByUserAndRole(AppUser user, Role role);
+    @EntityGraph(attributePaths = "role")
     List<UserRole> findByUser(AppUser user);
+
+    @Query("select new com.staffmanagement.authservice.repository.UserRoleName(ur.user.id, r.roleName) " +
+            "from UserRole ur join ur.role r where ur.user.id in :userIds order by r.roleName")
+    List<UserRoleName> findRoleNamesByUserIds(@Param("userIds") Collection<Long> userIds);
 }
@@ -0,0 +1,7 @@
+package com.staffmanagement.authservice.repository;
+
+/**
+ * A search result with its similarity to the query, highest first; 0 when unranked.
+ */
+public record UserSearchHit(UserSummary user, float score) {
+}
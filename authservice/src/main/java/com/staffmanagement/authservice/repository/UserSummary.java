@@ -0,0 +1,14 @@
+package com.staffmanagement.authservice.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Scalar user columns for list views, selected without materialising {@code AppUser}.
+ */
+public record UserSummary(Long id,
+                          String email,
+                          String username,
+                          boolean active,
+                          LocalDateTime createdAt,
+                          LocalDateTime lastLoginAt) {
+}
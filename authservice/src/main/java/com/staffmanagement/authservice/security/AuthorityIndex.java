@@ -0,0 +1,337 @@
+package com.staffmanagement.authservice.security;
+
+import com.staffmanagement.authservice.dto.response.UserProfileDTO;
+import com.staffmanagement.authservice.service.RoleCatalog;
+import com.staffmanagement.authservice.utils.LocalCache;
+import com.staffmanagement.authservice.utils.MetricsSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory index of each user's roles as a 64-bit set, keyed by cognito sub and user id.
+ * <p>
+ * Reads ({@link #hasRole}, {@link #roleBits}) are a map lookup and a mask test: no lock and no
+ * allocation. Writes (startup build, per-user reload, periodic sync and rebuild) query the
+ * database without holding a lock and publish immutable entries atomically per key. Every
+ * entry carries the user's {@code role_version}, and an entry never replaces one with a newer
+ * version, so a slow rebuild cannot overwrite a newer per-user reload.
+ * <p>
+ * Role changes made by other instances are picked up by {@link #sync}, which re-reads users
+ * whose {@code role_version} moved since the last poll. The full rebuild is a backstop. The
+ * same poll evicts cached profiles whose {@code updated_at} or {@code role_version} moved, so
+ * profile edits made elsewhere are not served stale either.
+ * <p>
+ * Each role gets a bit the first time it is seen; bits stay stable for the process lifetime.
+ * Only the first 64 roles are indexed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuthorityIndex implements MetricsSource {
+
+    private static final int MAX_ROLES = Long.SIZE;
+
+    private static final String SELECT_ALL =
+            "SELECT u.id, u.cognito_sub, u.role_version, ur.role_id FROM app_users u " +
+            "LEFT JOIN user_roles ur ON ur.user_id = u.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RoleCatalog roleCatalog;
+    private final LocalCache<String, UserProfileDTO> userProfileCache;
+
+    // Rows updated this long before the previous poll are read again, covering clock skew
+    // between instances and transactions that committed after the poll
+    @Value("${authority.index.sync-overlap-ms:60000}")
+    private long syncOverlapMs;
+
+    private record Grants(long userId, String cognitoSub, long bits, long version) {}
+
+    // Immutable, replaced as a whole when a role is first seen
+    private record RoleBits(Map<Long, Integer> byRoleId, Map<String, Integer> byName, String[] names) {}
+
+    private final ConcurrentHashMap<String, Grants> bySub = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Grants> byUserId = new ConcurrentHashMap<>();
+    private volatile RoleBits roleBits = new RoleBits(Map.of(), Map.of(), new String[0]);
+    // Only guards assigning new role bits
+    private final ReentrantLock roleLock = new ReentrantLock();
+    private volatile LocalDateTime lastSync;
+
+    private final LongAdder lookups = new LongAdder();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong syncedUsers = new AtomicLong();
+
+    /**
+     * Bit mask of a role, or 0 if the role is unknown or past the 64-role limit.
+     */
+    public long roleMask(String roleName) {
+        Integer bit = roleBits.byName().get(roleName);
+        return bit == null ? 0L : 1L << bit;
+    }
+
+    /**
+     * Role bits of a user. A user missing from the index (created on another instance, or
+     * before the startup build) is loaded once; an unknown sub yields 0 and is not cached.
+     */
+    public long roleBits(String cognitoSub) {
+        if (cognitoSub == null) return 0L;
+        lookups.increment();
+        Grants grants = bySub.get(cognitoSub);
+        if (grants != null) {
+            return grants.bits();
+        }
+        return loadBySub(cognitoSub);
+    }
+
+    public boolean hasRole(String cognitoSub, String roleName) {
+        long mask = roleMask(roleName);
+        return mask != 0 && (roleBits(cognitoSub) & mask) != 0;
+    }
+
+    public List<String> roleNames(long bits) {
+        String[] names = roleBits.names();
+        List<String> result = new ArrayList<>(Long.bitCount(bits));
+        for (long rest = bits; rest != 0; rest &= rest - 1) {
+            int bit = Long.numberOfTrailingZeros(rest);
+            if (bit < names.length) {
+                result.add(names[bit]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Re-reads a user's roles once the current transaction commits.
+     */
+    public void reloadAfterCommit(long userId) {
+        reloadAfterCommit(List.of(userId));
+    }
+
+    /**
+     * Re-reads the roles of several users with one query once the current transaction commits.
+     */
+    public void reloadAfterCommit(Collection<Long> userIds) {
+        if (userIds.isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reload(userIds);
+            return;
+        }
+        List<Long> ids = List.copyOf(userIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reload(ids);
+            }
+        });
+    }
+
+    public void reload(long userId) {
+        reload(List.of(userId));
+    }
+
+    /**
+     * Re-reads the given users; users that no longer exist are dropped.
+     */
+    public void reload(Collection<Long> userIds) {
+        if (userIds.isEmpty()) return;
+        loads.incrementAndGet();
+        Map<Long, Grants> loaded = query(SELECT_ALL + " WHERE u.id = ANY (?::bigint[])",
+                (Object) userIds.toArray(new Long[0]));
+        for (Long userId : userIds) {
+            Grants grants = loaded.get(userId);
+            if (grants != null) {
+                publish(grants);
+            } else {
+                Grants removed = byUserId.remove(userId);
+                if (removed != null) bySub.remove(removed.cognitoSub(), removed);
+            }
+        }
+    }
+
+    // Runs on the request path: the query holds no lock, so a rebuild never delays it
+    private long loadBySub(String cognitoSub) {
+        loads.incrementAndGet();
+        Map<Long, Grants> loaded = query(SELECT_ALL + " WHERE u.cognito_sub = ?", cognitoSub);
+        if (loaded.isEmpty()) return 0L;
+        return publish(loaded.values().iterator().next()).bits();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+    }
+
+    /**
+     * Re-reads users whose {@code role_version} changed since the previous poll, so a role
+     * granted or revoked on another instance takes effect here within one interval.
+     * Every role change bumps {@code role_version} and {@code updated_at} in its transaction.
+     * Cached profiles that no longer match the row are evicted as well.
+     */
+    @Scheduled(fixedDelayString = "${authority.index.sync-interval-ms:5000}",
+            initialDelayString = "${authority.index.sync-interval-ms:5000}")
+    public void sync() {
+        LocalDateTime since = lastSync;
+        if (since == null) return;
+        LocalDateTime started = LocalDateTime.now();
+        List<Long> changed = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, role_version, cognito_sub, updated_at FROM app_users WHERE updated_at >= ?", rs -> {
+            long version = rs.getLong(2);
+            Grants current = byUserId.get(rs.getLong(1));
+            // Users not in the index are loaded on their first lookup
+            if (current != null && current.version() < version) {
+                changed.add(rs.getLong(1));
+            }
+            String sub = rs.getString(3);
+            if (sub != null) {
+                Timestamp updated = rs.getTimestamp(4);
+                LocalDateTime updatedAt = updated == null ? null : updated.toLocalDateTime();
+                userProfileCache.invalidateIf(sub, profile -> profile.getRoleVersion() != version
+                        || !Objects.equals(profile.getUpdatedAt(), updatedAt));
+            }
+        }, Timestamp.valueOf(since.minus(Duration.ofMillis(syncOverlapMs))));
+        if (!changed.isEmpty()) {
+            reload(changed);
+            syncedUsers.addAndGet(changed.size());
+            log.debug("Authority index re-read {} users changed elsewhere", changed.size());
+        }
+        syncs.incrementAndGet();
+        lastSync = started;
+    }
+
+    /**
+     * Rebuilds the whole index from {@code user_roles}; users that no longer exist are dropped.
+     */
+    @Scheduled(fixedDelayString = "${authority.index.rebuild-interval-ms:300000}",
+            initialDelayString = "${authority.index.rebuild-interval-ms:300000}")
+    public void rebuild() {
+        LocalDateTime started = LocalDateTime.now();
+        Map<Long, Grants> loaded = query(SELECT_ALL);
+        Set<Long> stale = new HashSet<>(byUserId.keySet());
+        stale.removeAll(loaded.keySet());
+        for (Long userId : stale) {
+            Grants removed = byUserId.remove(userId);
+            if (removed != null) bySub.remove(removed.cognitoSub(), removed);
+        }
+        loaded.values().forEach(this::publish);
+        if (lastSync == null) {
+            lastSync = started;
+        }
+        rebuilds.incrementAndGet();
+        log.info("Authority index built ({} users, {} roles)", byUserId.size(), roleBits.names().length);
+    }
+
+    private Map<Long, Grants> query(String sql, Object... args) {
+        Map<Long, String> subs = new HashMap<>();
+        Map<Long, Long> versions = new HashMap<>();
+        Map<Long, Long> bits = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            long userId = rs.getLong(1);
+            subs.put(userId, rs.getString(2));
+            versions.put(userId, rs.getLong(3));
+            Long roleId = rs.getObject(4, Long.class);
+            bits.merge(userId, roleId == null ? 0L : maskForRoleId(roleId), (a, b) -> a | b);
+        }, args);
+        Map<Long, Grants> grants = new HashMap<>(subs.size() * 2);
+        subs.forEach((userId, sub) -> grants.put(userId, new Grants(userId, sub, bits.get(userId), versions.get(userId))));
+        return grants;
+    }
+
+    /**
+     * Installs an entry unless the index already holds a newer version for the user. Each map
+     * is updated with an atomic per-key merge, so concurrent publishers settle on the newest.
+     */
+    private Grants publish(Grants grants) {
+        Grants[] replaced = new Grants[1];
+        Grants current = byUserId.merge(grants.userId(), grants, (existing, candidate) -> {
+            if (existing.version() > candidate.version()) return existing;
+            replaced[0] = existing;
+            return candidate;
+        });
+        if (current != grants) return current;
+        if (replaced[0] != null && !replaced[0].cognitoSub().equals(grants.cognitoSub())) {
+            bySub.remove(replaced[0].cognitoSub(), replaced[0]);
+        }
+        bySub.merge(grants.cognitoSub(), grants,
+                (existing, candidate) -> existing.userId() == candidate.userId()
+                        && existing.version() > candidate.version() ? existing : candidate);
+        return grants;
+    }
+
+    private long maskForRoleId(long roleId) {
+        Integer bit = roleBits.byRoleId().get(roleId);
+        if (bit != null) return 1L << bit;
+
+        roleLock.lock();
+        try {
+            RoleBits current = roleBits;
+            bit = current.byRoleId().get(roleId);
+            if (bit != null) return 1L << bit;
+
+            RoleCatalog.RoleEntry role = roleCatalog.byId(roleId)
+                    .or(() -> Optional.ofNullable(roleCatalog.refresh().byId().get(roleId)))
+                    .orElse(null);
+            if (role == null) return 0L;
+            int next = current.names().length;
+            if (next >= MAX_ROLES) {
+                log.warn("Authority index is full; role {} is not indexed", role.roleName());
+                return 0L;
+            }
+            Map<Long, Integer> byRoleId = new HashMap<>(current.byRoleId());
+            Map<String, Integer> byName = new HashMap<>(current.byName());
+            String[] names = Arrays.copyOf(current.names(), next + 1);
+            byRoleId.put(roleId, next);
+            byName.put(role.roleName(), next);
+            names[next] = role.roleName();
+            roleBits = new RoleBits(Map.copyOf(byRoleId), Map.copyOf(byName), names);
+            return 1L << next;
+        } finally {
+            roleLock.unlock();
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "authorityIndex";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("users", byUserId.size());
+        metrics.put("roles", roleBits.names().length);
+        metrics.put("lookups", lookups.sum());
+        metrics.put("loads", loads.get());
+        metrics.put("rebuilds", rebuilds.get());
+        metrics.put("syncs", syncs.get());
+        metrics.put("syncedUsers", syncedUsers.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,120 @@
+package com.staffmanagement.authservice.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import com.staffmanagement.authservice.utils.LocalCache;
+import com.staffmanagement.authservice.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resource-server decoder that remembers tokens it has already verified. Clients send the same
+ * bearer token on every request until it expires, so after the first request the signature
+ * check and claim parsing are replaced by a hash and a map lookup.
+ * <p>
+ * Entries are keyed by the SHA-256 of the token and expire with the token's {@code exp}, so a
+ * cached token is never accepted past the point the validators would have rejected it.
+ * Tokens that fail validation are not cached.
+ */
+@Component
+public class CachingJwtDecoder implements JwtDecoder, MetricsSource {
+
+    private final NimbusJwtDecoder delegate;
+    private final LocalCache<String, Jwt> verified;
+
+    private final LongAdder decodes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLong decodeNanos = new AtomicLong();
+    private final AtomicLong maxDecodeNanos = new AtomicLong();
+
+    public CachingJwtDecoder(JwkSetManager jwkSetManager,
+                             @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+                             @Value("${security.jwt-cache.max-entries:10000}") int maxEntries,
+                             @Value("${security.jwt-cache.max-ttl-seconds:3600}") long maxTtlSeconds) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSetManager));
+        // Claims are checked by Spring's validators below, as NimbusJwtDecoder's builder does
+        processor.setJWTClaimsSetVerifier((claims, context) -> { });
+
+        this.delegate = new NimbusJwtDecoder(processor);
+        this.delegate.setJwtValidator(issuerUri.isBlank()
+                ? JwtValidators.createDefault()
+                : JwtValidators.createDefaultWithIssuer(issuerUri));
+        this.verified = new LocalCache<>("jwtCache", maxEntries, maxTtlSeconds * 1000);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = hash(token);
+        Jwt cached = verified.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long start = System.nanoTime();
+        Jwt jwt;
+        try {
+            jwt = delegate.decode(token);
+        } catch (JwtException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            decodes.increment();
+            decodeNanos.addAndGet(elapsed);
+            maxDecodeNanos.accumulateAndGet(elapsed, Math::max);
+        }
+
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt != null) {
+            long ttlMillis = expiresAt.toEpochMilli() - System.currentTimeMillis();
+            if (ttlMillis > 0) {
+                verified.put(key, jwt, ttlMillis);
+            }
+        }
+        return jwt;
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "jwtDecoder";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long count = decodes.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("decodes", count);
+        metrics.put("failures", failures.sum());
+        metrics.put("avgDecodeMicros", count == 0 ? 0.0 : decodeNanos.get() / 1_000.0 / count);
+        metrics.put("maxDecodeMicros", maxDecodeNanos.get() / 1_000.0);
+        metrics.put("cache", verified.metrics());
+        return metrics;
+    }
+}
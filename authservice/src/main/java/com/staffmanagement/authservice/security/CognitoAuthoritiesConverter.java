@@ -0,0 +1,46 @@
+package com.staffmanagement.authservice.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Grants {@code ROLE_*} authorities for both the token's {@code cognito:groups} and the user's
+ * roles in the database. DB roles come from the {@link AuthorityIndex}, so building the
+ * authentication does not query the database.
+ */
+@Component
+@RequiredArgsConstructor
+public class CognitoAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    static final String GROUPS_CLAIM = "cognito:groups";
+    static final String AUTHORITY_PREFIX = "ROLE_";
+
+    private final AuthorityIndex authorityIndex;
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        Set<GrantedAuthority> authorities = new LinkedHashSet<>();
+        List<String> groups = jwt.getClaimAsStringList(GROUPS_CLAIM);
+        if (groups != null) {
+            for (String group : groups) {
+                authorities.add(new SimpleGrantedAuthority(AUTHORITY_PREFIX + group));
+            }
+        }
+        long bits = authorityIndex.roleBits(jwt.getSubject());
+        if (bits != 0) {
+            for (String role : authorityIndex.roleNames(bits)) {
+                authorities.add(new SimpleGrantedAuthority(AUTHORITY_PREFIX + role));
+            }
+        }
+        return authorities;
+    }
+}
@@ -0,0 +1,187 @@
+package com.staffmanagement.authservice.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the signing keys of the token issuer. The key set is fetched at startup and refreshed in
+ * the background, so requests never wait on the JWKS endpoint in the common case.
+ * <p>
+ * Every successful fetch is also written to disk. If the endpoint is unreachable at startup
+ * the last copy on disk is used, and a failed background refresh keeps the current keys.
+ * A token signed with an unknown key id triggers one extra fetch (key rotation), rate
+ * limited so bad tokens cannot hammer the issuer.
+ */
+@Slf4j
+@Component
+public class JwkSetManager implements JWKSource<SecurityContext>, MetricsSource {
+
+    private final String jwkSetUri;
+    private final Path cacheFile;
+    private final Duration minRefreshInterval;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    private final AtomicReference<JWKSet> current = new AtomicReference<>(new JWKSet());
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile long lastAttemptNanos;
+    private volatile Instant lastRefreshedAt;
+    private volatile String source = "none";
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong unknownKeyRefreshes = new AtomicLong();
+
+    public JwkSetManager(
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:}") String jwkSetUri,
+            @Value("${security.jwks.cache-file:${java.io.tmpdir}/authservice-jwks.json}") String cacheFile,
+            @Value("${security.jwks.min-refresh-interval-ms:30000}") long minRefreshIntervalMs,
+            @Value("${security.jwks.timeout-ms:5000}") long timeoutMs) {
+        // Cognito publishes its keys under the issuer
+        this.jwkSetUri = !jwkSetUri.isBlank() ? jwkSetUri
+                : issuerUri.isBlank() ? "" : issuerUri.replaceAll("/+$", "") + "/.well-known/jwks.json";
+        this.cacheFile = Path.of(cacheFile);
+        this.minRefreshInterval = Duration.ofMillis(minRefreshIntervalMs);
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @PostConstruct
+    public void prefetch() {
+        if (jwkSetUri.isEmpty()) {
+            log.warn("No issuer or JWK set URI configured; JWT validation has no keys");
+            return;
+        }
+        if (refresh()) {
+            return;
+        }
+        try {
+            current.set(JWKSet.parse(Files.readString(cacheFile, StandardCharsets.UTF_8)));
+            source = "disk";
+            log.warn("JWKS endpoint unavailable at startup; using cached keys from {}", cacheFile);
+        } catch (IOException | ParseException e) {
+            log.error("JWKS endpoint unavailable and no usable cached copy at {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwks.refresh-interval-ms:3600000}",
+            initialDelayString = "${security.jwks.refresh-interval-ms:3600000}")
+    public void scheduledRefresh() {
+        if (!jwkSetUri.isEmpty()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Fetches the key set and publishes it; on failure the current keys stay in place.
+     */
+    public boolean refresh() {
+        refreshLock.lock();
+        try {
+            lastAttemptNanos = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder(URI.create(jwkSetUri))
+                    .timeout(timeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            JWKSet keys = JWKSet.parse(response.body());
+            current.set(keys);
+            source = "network";
+            lastRefreshedAt = Instant.now();
+            refreshes.incrementAndGet();
+            writeCacheFile(response.body());
+            log.info("Loaded {} signing keys from {}", keys.getKeys().size(), jwkSetUri);
+            return true;
+        } catch (IOException | ParseException e) {
+            failures.incrementAndGet();
+            log.warn("JWKS refresh from {} failed: {}", jwkSetUri, e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.incrementAndGet();
+            return false;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void writeCacheFile(String json) {
+        try {
+            Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+            Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.writeString(tmp, json, StandardCharsets.UTF_8);
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write JWKS cache file {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext context) {
+        List<JWK> keys = selector.select(current.get());
+        if (!keys.isEmpty() || jwkSetUri.isEmpty()) {
+            return keys;
+        }
+        // Unknown key id: the issuer may have rotated keys since the last refresh
+        if (System.nanoTime() - lastAttemptNanos >= minRefreshInterval.toNanos() && refreshLock.tryLock()) {
+            try {
+                unknownKeyRefreshes.incrementAndGet();
+                refresh();
+            } finally {
+                refreshLock.unlock();
+            }
+            keys = selector.select(current.get());
+        }
+        return keys;
+    }
+
+    @Override
+    public String metricsName() {
+        return "jwks";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("keys", current.get().getKeys().size());
+        metrics.put("source", source);
+        metrics.put("lastRefreshedAt", lastRefreshedAt);
+        metrics.put("refreshes", refreshes.get());
+        metrics.put("failures", failures.get());
+        metrics.put("unknownKeyRefreshes", unknownKeyRefreshes.get());
+        return metrics;
+    }
+}
@@ -9,6 +9,7 @@ import com.staffmanagement.authservice.entity.UserRole;
 import com.staffmanagement.authservice.repository.AppUserRepository;
 import com.staffmanagement.authservice.repository.RoleRepository;
 import com.staffmanagement.authservice.repository.UserRoleRepository;
+import com.staffmanagement.authservice.service.RoleCatalog;
 
 @Component
 public class SeedData implements CommandLineRunner {
@@ -16,11 +17,14 @@ public class SeedData implements CommandLineRunner {
     private final AppUserRepository userRepository;
     private final RoleRepository roleRepository;
     private final UserRoleRepository userRoleRepository;
+    private final RoleCatalog roleCatalog;
 
-    public SeedData(AppUserRepository userRepository, RoleRepository roleRepository, UserRoleRepository userRoleRepository) {
+    public SeedData(AppUserRepository userRepository, RoleRepository roleRepository, UserRoleRepository userRoleRepository,
+                    RoleCatalog roleCatalog) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.userRoleRepository = userRoleRepository;
+        this.roleCatalog = roleCatalog;
     }
 
     @Override
@@ -41,6 +45,7 @@ public class SeedData implements CommandLineRunner {
                         .description("Regular user role")
                         .isSystemRole(false)
                         .build()));
+        roleCatalog.refreshAfterCommit();
 
         // Check if users already exist and create if missing
         AppUser user1 = userRepository.findByUsername("alice")
@@ -1,21 +1,29 @@
 package com.staffmanagement.authservice.service;
 
+import com.staffmanagement.authservice.dto.common.CursorPage;
 import com.staffmanagement.authservice.dto.request.AssignRolesRequest;
 import com.staffmanagement.authservice.dto.response.AdminUserDTO;
+import com.staffmanagement.authservice.dto.response.UserProfileDTO;
 import com.staffmanagement.authservice.entity.AppUser;
 import com.staffmanagement.authservice.entity.Role;
 import com.staffmanagement.authservice.entity.UserRole;
 import com.staffmanagement.authservice.repository.AppUserRepository;
 import com.staffmanagement.authservice.repository.RoleRepository;
+import com.staffmanagement.authservice.repository.UserRoleName;
 import com.staffmanagement.authservice.repository.UserRoleRepository;
+import com.staffmanagement.authservice.repository.UserSearchHit;
+import com.staffmanagement.authservice.repository.UserSummary;
+import com.staffmanagement.authservice.security.AuthorityIndex;
+import com.staffmanagement.authservice.utils.LocalCache;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.*;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -27,45 +35,166 @@ public class AdminUserService {
     private final AppUserRepository appUserRepository;
     private final RoleRepository roleRepository;
     private final UserRoleRepository userRoleRepository;
-    private final CognitoAdminService cognitoAdminService;
+    private final GroupSyncOutbox groupSyncOutbox;
+    private final LastSeenTracker lastSeenTracker;
+    private final LocalCache<String, UserProfileDTO> userProfileCache;
+    private final RoleCatalog roleCatalog;
+    private final AuthorityIndex authorityIndex;
+    private final CognitoGroupMapping cognitoGroupMapping;
+    private final UserSearchIndexService userSearchIndexService;
+
+    private static final int MAX_SLICE_SIZE = 100;
 
     public AdminUserService(AppUserRepository appUserRepository,
                           RoleRepository roleRepository,
                           UserRoleRepository userRoleRepository,
-                          CognitoAdminService cognitoAdminService) {
+                          GroupSyncOutbox groupSyncOutbox,
+                          LastSeenTracker lastSeenTracker,
+                          LocalCache<String, UserProfileDTO> userProfileCache,
+                          RoleCatalog roleCatalog,
+                          AuthorityIndex authorityIndex,
+                          CognitoGroupMapping cognitoGroupMapping,
+                          UserSearchIndexService userSearchIndexService) {
         this.appUserRepository = appUserRepository;
         this.roleRepository = roleRepository;
         this.userRoleRepository = userRoleRepository;
-        this.cognitoAdminService = cognitoAdminService;
+        this.groupSyncOutbox = groupSyncOutbox;
+        this.lastSeenTracker = lastSeenTracker;
+        this.userProfileCache = userProfileCache;
+        this.roleCatalog = roleCatalog;
+        this.authorityIndex = authorityIndex;
+        this.cognitoGroupMapping = cognitoGroupMapping;
+        this.userSearchIndexService = userSearchIndexService;
     }
 
-    @Value("${cognito.allowed-groups:}")
-    private String allowedGroupsCsv;
-    
-    @Value("${cognito.sync-groups:true}")
-    private boolean cognitoSyncGroups;
-
     // -------------------------------
     // Search / paginate users
     // -------------------------------
     public Page<AdminUserDTO> searchUsers(String query, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<AppUser> users;
+        Page<UserSummary> users;
 
         if (query == null || query.isBlank()) {
-            users = appUserRepository.findAll(pageable);
+            users = appUserRepository.findSummaries(pageable);
         } else {
-            users = appUserRepository.findByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCase(query, query, pageable);
+            users = appUserRepository.searchSummaries(containsPattern(query), pageable);
+        }
+
+        Map<Long, List<String>> rolesByUser = roleNamesByUser(users.getContent());
+        return users.map(u -> toAdminDTO(u, rolesByUser));
+    }
+
+    /**
+     * Count-free search: newest first without a query, most similar first with one. Pass
+     * {@code nextCursor} back for the following slice; {@code estimate} adds the planner's
+     * row estimate instead of an exact count.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AdminUserDTO> searchUsersSlice(String query, String cursor, int size, boolean estimate) {
+        int sliceSize = Math.max(1, Math.min(size, MAX_SLICE_SIZE));
+        String normalized = query == null || query.isBlank() ? null : query.trim().toLowerCase(Locale.ROOT);
+        String pattern = normalized == null ? null : containsPattern(normalized);
+        boolean fuzzy = userSearchIndexService.trigramAvailable();
+        String[] position = cursor == null || cursor.isBlank() ? null : decodeCursor(cursor, normalized != null);
+
+        // One extra row tells whether another slice exists
+        List<UserSummary> users;
+        String nextCursor = null;
+        if (normalized == null) {
+            users = appUserRepository.findSummariesAfter(
+                    position == null ? null : LocalDateTime.parse(position[0]),
+                    position == null ? null : Long.parseLong(position[1]),
+                    sliceSize + 1);
+            if (users.size() > sliceSize) {
+                users = users.subList(0, sliceSize);
+                UserSummary last = users.get(sliceSize - 1);
+                nextCursor = encodeCursor(last.createdAt().toString(), last.id());
+            }
+        } else {
+            List<UserSearchHit> hits = appUserRepository.searchRanked(normalized, pattern, fuzzy,
+                    position == null ? null : Float.parseFloat(position[0]),
+                    position == null ? null : Long.parseLong(position[1]),
+                    sliceSize + 1);
+            if (hits.size() > sliceSize) {
+                hits = hits.subList(0, sliceSize);
+                UserSearchHit last = hits.get(sliceSize - 1);
+                nextCursor = encodeCursor(Float.toString(last.score()), last.user().id());
+            }
+            users = hits.stream().map(UserSearchHit::user).toList();
+        }
+
+        Map<Long, List<String>> rolesByUser = roleNamesByUser(users);
+        return CursorPage.<AdminUserDTO>builder()
+                .content(users.stream().map(u -> toAdminDTO(u, rolesByUser)).toList())
+                .size(sliceSize)
+                .nextCursor(nextCursor)
+                .estimatedTotal(estimate ? appUserRepository.estimateCount(normalized, pattern, fuzzy) : null)
+                .build();
+    }
+
+    // One statement for the role names of the whole page instead of one per user and role
+    private Map<Long, List<String>> roleNamesByUser(List<UserSummary> users) {
+        Map<Long, List<String>> rolesByUser = new HashMap<>();
+        if (!users.isEmpty()) {
+            List<Long> ids = users.stream().map(UserSummary::id).toList();
+            for (UserRoleName ur : userRoleRepository.findRoleNamesByUserIds(ids)) {
+                rolesByUser.computeIfAbsent(ur.userId(), id -> new ArrayList<>()).add(ur.roleName());
+            }
         }
+        return rolesByUser;
+    }
 
-        return users.map(this::toDTO);
+    private AdminUserDTO toAdminDTO(UserSummary u, Map<Long, List<String>> rolesByUser) {
+        return AdminUserDTO.builder()
+                .id(u.id())
+                .username(u.username())
+                .email(u.email())
+                .isActive(u.active())
+                .roles(rolesByUser.getOrDefault(u.id(), List.of()))
+                .createdAt(u.createdAt())
+                .lastLoginAt(lastSeenTracker.lastSeen(u.id(), u.lastLoginAt()))
+                .build();
+    }
+
+    private static String encodeCursor(String key, Long id) {
+        String raw = key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Listing cursors carry created_at, search cursors the similarity score
+    private static String[] decodeCursor(String cursor, boolean ranked) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            if (ranked) {
+                Float.parseFloat(parts[0]);
+            } else {
+                LocalDateTime.parse(parts[0]);
+            }
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    // Case-insensitive "contains" pattern with LIKE wildcards in the input escaped
+    private static String containsPattern(String query) {
+        String escaped = query.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
     }
 
     // -------------------------------
     // Fetch single user
     // -------------------------------
     public AdminUserDTO getUser(Long userId) {
-        AppUser user = appUserRepository.findById(userId)
+        AppUser user = appUserRepository.findWithRolesById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found with ID: " + userId));
         return toDTO(user);
     }
@@ -75,39 +204,28 @@ public class AdminUserService {
      * Useful for manual reconciliation when automated sync fails.
      */
     public void resyncUserGroups(Long userId) {
-        AppUser targetUser = appUserRepository.findById(userId)
+        AppUser targetUser = appUserRepository.findWithRolesById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found with ID: " + userId));
 
-        Set<String> allowedGroups = Arrays.stream((allowedGroupsCsv == null ? "" : allowedGroupsCsv).split(","))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toSet());
+        Set<String> allowedGroups = cognitoGroupMapping.allowedGroups();
 
         // Current DB roles
         Set<String> dbRoles = targetUser.getUserRoles().stream()
                 .map(ur -> ur.getRole().getRoleName())
                 .collect(Collectors.toSet());
 
-    // Prefer Cognito 'sub' when available; otherwise prefer App username, then email
-    String username = targetUser.getCognitoSub() != null && !targetUser.getCognitoSub().isBlank()
-        ? targetUser.getCognitoSub()
-        : (targetUser.getUsername() != null && !targetUser.getUsername().isBlank()
-            ? targetUser.getUsername()
-            : targetUser.getEmail());
+        // Prefer Cognito 'sub' when available; otherwise prefer App username, then email
+        String username = CognitoGroupMapping.cognitoUsername(targetUser);
 
-        // For each allowed group, ensure membership matches DB
+        // For each allowed group, queue the membership that matches DB; applied after commit
+        List<GroupSyncOutbox.Change> changes = new ArrayList<>();
         for (String group : allowedGroups) {
-            try {
-                if (dbRoles.contains(group)) {
-                    cognitoAdminService.addUserToGroup(username, group);
-                } else {
-                    cognitoAdminService.removeUserFromGroup(username, group);
-                }
-            } catch (Exception e) {
-                log.warn("Resync: failed to sync Cognito group {} for user {}: {}", group, targetUser.getEmail(), e.getMessage());
-            }
+            changes.add(new GroupSyncOutbox.Change(targetUser.getId(), username, group,
+                    dbRoles.contains(group) ? GroupSyncOutbox.Operation.ADD : GroupSyncOutbox.Operation.REMOVE));
         }
-        log.info("Resync completed for user {} (id={})", targetUser.getEmail(), targetUser.getId());
+        groupSyncOutbox.enqueueAll(changes);
+        evictProfile(targetUser);
+        log.info("Resync queued for user {} (id={})", targetUser.getEmail(), targetUser.getId());
     }
 
     // -------------------------------
@@ -127,12 +245,6 @@ public class AdminUserService {
     List<String> add = request.getAddRoles();
     List<String> remove = request.getRemoveRoles();
 
-    // parse allowed groups into a set for quick lookup
-    Set<String> allowedGroups = Arrays.stream((allowedGroupsCsv == null ? "" : allowedGroupsCsv).split(","))
-        .map(String::trim)
-        .filter(s -> !s.isEmpty())
-        .collect(Collectors.toSet());
-
         if ((add != null && !add.isEmpty()) || (remove != null && !remove.isEmpty())) {
             // Track unique Cognito groups to remove/add to avoid duplicate AWS calls
             Set<String> groupsToRemove = new HashSet<>();
@@ -141,16 +253,15 @@ public class AdminUserService {
             // Removals
             if (remove != null) {
                 for (String roleName : remove) {
-                    Role role = roleRepository.findByRoleName(roleName)
-                            .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
+                    Role role = roleReference(roleName);
                     Optional<UserRole> existing = userRoleRepository.findByUserAndRole(targetUser, role);
                     existing.ifPresent(userRoleRepository::delete);
                     log.info("Removed role {} from user {}", roleName, targetUser.getEmail());
 
                     // If this role maps to a Cognito group we should remove the user from that group (queue it)
                     try {
-                        if (allowedGroups.contains(roleName) && cognitoSyncGroups) {
-                            String cognitoGroup = mapToCognitoGroup(roleName);
+                        if (cognitoGroupMapping.isSynced(roleName)) {
+                            String cognitoGroup = cognitoGroupMapping.toCognitoGroup(roleName);
                             if (cognitoGroup != null) groupsToRemove.add(cognitoGroup);
                         }
                     } catch (Exception e) {
@@ -162,8 +273,7 @@ public class AdminUserService {
             // Additions
             if (add != null) {
                 for (String roleName : add) {
-                    Role role = roleRepository.findByRoleName(roleName)
-                            .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
+                    Role role = roleReference(roleName);
                     Optional<UserRole> existing = userRoleRepository.findByUserAndRole(targetUser, role);
                     if (existing.isEmpty()) {
                         UserRole userRole = new UserRole();
@@ -176,8 +286,8 @@ public class AdminUserService {
 
                         // If this role maps to a Cognito group we should add the user to that group (queue it)
                         try {
-                            if (allowedGroups.contains(roleName) && cognitoSyncGroups) {
-                                String cognitoGroup = mapToCognitoGroup(roleName);
+                            if (cognitoGroupMapping.isSynced(roleName)) {
+                                String cognitoGroup = cognitoGroupMapping.toCognitoGroup(roleName);
                                 if (cognitoGroup != null) groupsToAdd.add(cognitoGroup);
                             }
                         } catch (Exception e) {
@@ -187,19 +297,12 @@ public class AdminUserService {
                 }
             }
 
-            // Perform unique Cognito group removals and additions once per group
-                String username = targetUser.getCognitoSub() != null && !targetUser.getCognitoSub().isBlank()
-                    ? targetUser.getCognitoSub()
-                    : (targetUser.getUsername() != null && !targetUser.getUsername().isBlank()
-                        ? targetUser.getUsername()
-                        : targetUser.getEmail());
-            for (String g : groupsToRemove) {
-                try { cognitoAdminService.removeUserFromGroup(username, g); } catch (Exception e) { log.warn("Failed to remove Cognito group {} for user {}: {}", g, username, e.getMessage()); }
-            }
-            for (String g : groupsToAdd) {
-                try { cognitoAdminService.addUserToGroup(username, g); } catch (Exception e) { log.warn("Failed to add Cognito group {} for user {}: {}", g, username, e.getMessage()); }
-            }
+            // Queue unique Cognito group removals and additions once per group
+            queueGroupChanges(targetUser, groupsToRemove, groupsToAdd);
 
+            appUserRepository.bumpRoleVersion(targetUser.getId(), LocalDateTime.now());
+            authorityIndex.reloadAfterCommit(targetUser.getId());
+            evictProfile(targetUser);
             log.info("User {} roles incrementally updated by {}", targetUser.getEmail(), currentUserEmail);
             return;
         }
@@ -230,8 +333,8 @@ public class AdminUserService {
 
                 // Queue cognito removal if applicable
                 try {
-                    if (allowedGroups.contains(rn) && cognitoSyncGroups) {
-                        String cognitoGroup = mapToCognitoGroup(rn);
+                    if (cognitoGroupMapping.isSynced(rn)) {
+                        String cognitoGroup = cognitoGroupMapping.toCognitoGroup(rn);
                         if (cognitoGroup != null) groupsToRemove.add(cognitoGroup);
                     }
                 } catch (Exception e) {
@@ -243,8 +346,7 @@ public class AdminUserService {
         // Roles to add
         for (String roleName : requestedSet) {
             if (!currentRoleNames.contains(roleName)) {
-                Role role = roleRepository.findByRoleName(roleName)
-                        .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
+                Role role = roleReference(roleName);
                 UserRole userRole = new UserRole();
                 userRole.setUser(targetUser);
                 userRole.setRole(role);
@@ -255,8 +357,8 @@ public class AdminUserService {
 
                 // Queue cognito add if applicable
                 try {
-                    if (allowedGroups.contains(roleName) && cognitoSyncGroups) {
-                        String cognitoGroup = mapToCognitoGroup(roleName);
+                    if (cognitoGroupMapping.isSynced(roleName)) {
+                        String cognitoGroup = cognitoGroupMapping.toCognitoGroup(roleName);
                         if (cognitoGroup != null) groupsToAdd.add(cognitoGroup);
                     }
                 } catch (Exception e) {
@@ -265,25 +367,31 @@ public class AdminUserService {
             }
         }
 
-        // Execute unique cognito operations
-        String username = targetUser.getCognitoSub() != null && !targetUser.getCognitoSub().isBlank()
-            ? targetUser.getCognitoSub()
-            : (targetUser.getUsername() != null && !targetUser.getUsername().isBlank()
-            ? targetUser.getUsername()
-            : targetUser.getEmail());
-        for (String g : groupsToRemove) {
-            try { cognitoAdminService.removeUserFromGroup(username, g); } catch (Exception e) { log.warn("Failed to remove Cognito group {} for user {}: {}", g, username, e.getMessage()); }
-        }
-        for (String g : groupsToAdd) {
-            try { cognitoAdminService.addUserToGroup(username, g); } catch (Exception e) { log.warn("Failed to add Cognito group {} for user {}: {}", g, username, e.getMessage()); }
-        }
+        // Queue unique cognito operations
+        queueGroupChanges(targetUser, groupsToRemove, groupsToAdd);
 
+        appUserRepository.bumpRoleVersion(targetUser.getId(), LocalDateTime.now());
+        authorityIndex.reloadAfterCommit(targetUser.getId());
+        evictProfile(targetUser);
         log.info("User {} roles replaced successfully by {}", targetUser.getEmail(), currentUserEmail);
     }
 
     // -------------------------------
     // Helper methods
     // -------------------------------
+
+    // Written to the outbox in this transaction; Cognito is called by the dispatcher after commit
+    private void queueGroupChanges(AppUser user, Set<String> groupsToRemove, Set<String> groupsToAdd) {
+        String username = CognitoGroupMapping.cognitoUsername(user);
+        List<GroupSyncOutbox.Change> changes = new ArrayList<>();
+        for (String g : groupsToRemove) {
+            changes.add(new GroupSyncOutbox.Change(user.getId(), username, g, GroupSyncOutbox.Operation.REMOVE));
+        }
+        for (String g : groupsToAdd) {
+            changes.add(new GroupSyncOutbox.Change(user.getId(), username, g, GroupSyncOutbox.Operation.ADD));
+        }
+        groupSyncOutbox.enqueueAll(changes);
+    }
     private AdminUserDTO toDTO(AppUser user) {
         return AdminUserDTO.builder()
                 .id(user.getId())
@@ -294,23 +402,22 @@ public class AdminUserService {
                         .map(ur -> ur.getRole().getRoleName())
                         .collect(Collectors.toList()))
                 .createdAt(user.getCreatedAt())
-                .lastLoginAt(user.getLastLoginAt())
+                .lastLoginAt(lastSeenTracker.lastSeen(user.getId(), user.getLastLoginAt()))
                 .build();
     }
 
-    /**
-     * Map application role names to Cognito group names.
-     * Per request, ML1/ML2/ML3 (and HR) should also map to the ADMIN Cognito group.
-     */
-    private String mapToCognitoGroup(String roleName) {
-        if (roleName == null) return null;
-        // Per product decision: map ML-level roles and HR to the ADMIN Cognito group
-        // so that management/HR roles receive the ADMIN group in Cognito.
-        if (roleName.equalsIgnoreCase("HR")) return "ADMIN";
-        if (roleName.toUpperCase().startsWith("ML")) return "ADMIN";
-        // Default: map role name directly to Cognito group
-        return roleName;
+    // Resolved from the role catalog; the reference is an uninitialised proxy, so no SELECT.
+    // A miss refreshes the catalog once, for roles created elsewhere since the last refresh.
+    private Role roleReference(String roleName) {
+        RoleCatalog.RoleEntry entry = roleCatalog.byName(roleName)
+                .or(() -> Optional.ofNullable(roleCatalog.refresh().byName().get(roleName)))
+                .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
+        return roleRepository.getReferenceById(entry.id());
     }
 
-
+    private void evictProfile(AppUser user) {
+        if (user.getCognitoSub() != null) {
+            userProfileCache.invalidateAfterCommit(user.getCognitoSub());
+        }
+    }
 }
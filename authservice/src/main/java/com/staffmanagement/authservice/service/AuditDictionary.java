@@ -0,0 +1,250 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.utils.LocalCache;
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Intern cache for the audit dictionaries: event type names and user-agent strings are
+ * stored once in {@code audit_event_type} / {@code audit_user_agent} and referenced by id
+ * from {@code login_audit}.
+ * <p>
+ * New entries are inserted in their own transaction, so a cached id never points at a row
+ * that was rolled back together with an audit batch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AuditDictionary implements CommandLineRunner, MetricsSource {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    // User agents are open-ended, so both directions are size-bounded LRU caches
+    private final LocalCache<String, Integer> auditUserAgentIdCache;
+    private final LocalCache<Integer, String> auditUserAgentTextCache;
+
+    private final ConcurrentHashMap<String, Short> eventTypeIds = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Short, String> eventTypeNames = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private TransactionTemplate requiresNew;
+
+    @PostConstruct
+    public void init() {
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Returns the id of an event type, creating the dictionary entry on first use.
+     */
+    public short eventTypeId(String name) {
+        Short id = eventTypeIds.get(name);
+        if (id != null) {
+            hits.incrementAndGet();
+            return id;
+        }
+        resolveEventTypes(List.of(name));
+        return eventTypeIds.get(name);
+    }
+
+    /**
+     * Returns the id of a user agent, creating the dictionary entry on first use; null stays null.
+     */
+    public Integer userAgentId(String userAgent) {
+        if (userAgent == null) return null;
+        Integer id = auditUserAgentIdCache.get(userAgent);
+        if (id != null) {
+            hits.incrementAndGet();
+            return id;
+        }
+        return resolveUserAgents(List.of(userAgent)).get(userAgent);
+    }
+
+    /**
+     * Makes sure every event type and user agent in the batch has an id, using one
+     * statement per dictionary for all misses. Returns the user-agent ids for the batch.
+     */
+    public Map<String, Integer> prepare(Collection<AuditEvent> events) {
+        Set<String> missingTypes = new LinkedHashSet<>();
+        Set<String> missingAgents = new LinkedHashSet<>();
+        Map<String, Integer> agents = new LinkedHashMap<>();
+        long cached = 0;
+        for (AuditEvent event : events) {
+            if (eventTypeIds.containsKey(event.eventType())) {
+                cached++;
+            } else {
+                missingTypes.add(event.eventType());
+            }
+            String ua = event.userAgent();
+            if (ua == null || agents.containsKey(ua)) continue;
+            Integer id = auditUserAgentIdCache.get(ua);
+            if (id != null) {
+                agents.put(ua, id);
+                cached++;
+            } else {
+                missingAgents.add(ua);
+            }
+        }
+        hits.addAndGet(cached);
+        if (!missingTypes.isEmpty()) {
+            resolveEventTypes(missingTypes);
+        }
+        if (!missingAgents.isEmpty()) {
+            agents.putAll(resolveUserAgents(missingAgents));
+        }
+        return agents;
+    }
+
+    public String eventTypeName(Short id) {
+        if (id == null) return null;
+        String name = eventTypeNames.get(id);
+        if (name != null) return name;
+        name = jdbcTemplate.query("SELECT name FROM audit_event_type WHERE id = ?",
+                rs -> rs.next() ? rs.getString(1) : null, id);
+        if (name != null) cacheEventType(name, id);
+        return name;
+    }
+
+    public String userAgent(Integer id) {
+        if (id == null) return null;
+        String text = auditUserAgentTextCache.get(id);
+        if (text != null) return text;
+        text = jdbcTemplate.query("SELECT user_agent FROM audit_user_agent WHERE id = ?",
+                rs -> rs.next() ? rs.getString(1) : null, id);
+        if (text != null) cacheUserAgent(text, id);
+        return text;
+    }
+
+    private void resolveEventTypes(Collection<String> names) {
+        misses.addAndGet(names.size());
+        Object[] args = names.toArray();
+        String placeholders = String.join(", ", Collections.nCopies(args.length, "(?)"));
+        requiresNew.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO audit_event_type (name) VALUES " + placeholders +
+                    " ON CONFLICT (name) DO NOTHING", args);
+            jdbcTemplate.query("SELECT id, name FROM audit_event_type WHERE name = ANY (?)",
+                    rs -> {
+                        cacheEventType(rs.getString("name"), rs.getShort("id"));
+                    },
+                    (Object) names.toArray(new String[0]));
+        });
+    }
+
+    private Map<String, Integer> resolveUserAgents(Collection<String> userAgents) {
+        misses.addAndGet(userAgents.size());
+        Object[] args = new Object[userAgents.size() * 2];
+        int i = 0;
+        for (String ua : userAgents) {
+            args[i++] = ua;
+            args[i++] = ua;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(userAgents.size(), "(md5(?), ?)"));
+        Map<String, Integer> resolved = new LinkedHashMap<>();
+        requiresNew.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO audit_user_agent (ua_hash, user_agent) VALUES " + placeholders +
+                    " ON CONFLICT (ua_hash) DO NOTHING", args);
+            jdbcTemplate.query("SELECT id, user_agent FROM audit_user_agent WHERE ua_hash = ANY (" +
+                            "SELECT md5(t) FROM unnest(?::text[]) AS t)",
+                    rs -> {
+                        String text = rs.getString("user_agent");
+                        int id = rs.getInt("id");
+                        resolved.put(text, id);
+                        cacheUserAgent(text, id);
+                    },
+                    (Object) userAgents.toArray(new String[0]));
+        });
+        return resolved;
+    }
+
+    private void cacheEventType(String name, short id) {
+        eventTypeIds.put(name, id);
+        eventTypeNames.put(id, name);
+    }
+
+    private void cacheUserAgent(String text, int id) {
+        auditUserAgentIdCache.put(text, id);
+        auditUserAgentTextCache.put(id, text);
+    }
+
+    /**
+     * Moves existing rows from the old string columns to dictionary ids and drops the
+     * string columns, then warms the cache. Runs after partition setup and before the
+     * rollup backfill, which reads event types through the dictionary.
+     */
+    @Override
+    public void run(String... args) {
+        boolean legacy = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM information_schema.columns " +
+                "WHERE table_schema = 'public' AND table_name = 'login_audit' AND column_name = 'event_type')",
+                Boolean.class));
+        if (legacy) {
+            migrateLegacyColumns();
+        }
+        jdbcTemplate.query("SELECT id, name FROM audit_event_type",
+                rs -> {
+                    cacheEventType(rs.getString("name"), rs.getShort("id"));
+                });
+        log.info("Audit dictionary ready ({} event types)", eventTypeIds.size());
+    }
+
+    private void migrateLegacyColumns() {
+        log.info("Migrating login_audit event types and user agents to dictionary ids");
+        requiresNew.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE login_audit ADD COLUMN IF NOT EXISTS event_type_id SMALLINT");
+            jdbcTemplate.execute("ALTER TABLE login_audit ADD COLUMN IF NOT EXISTS user_agent_id INTEGER");
+            jdbcTemplate.update("INSERT INTO audit_event_type (name) " +
+                    "SELECT DISTINCT event_type FROM login_audit WHERE event_type IS NOT NULL " +
+                    "ON CONFLICT (name) DO NOTHING");
+            jdbcTemplate.update("INSERT INTO audit_user_agent (ua_hash, user_agent) " +
+                    "SELECT DISTINCT ON (md5(user_agent)) md5(user_agent), user_agent FROM login_audit " +
+                    "WHERE user_agent IS NOT NULL ON CONFLICT (ua_hash) DO NOTHING");
+            int migrated = jdbcTemplate.update("UPDATE login_audit AS a SET " +
+                    "event_type_id = (SELECT t.id FROM audit_event_type t WHERE t.name = a.event_type), " +
+                    "user_agent_id = (SELECT ua.id FROM audit_user_agent ua WHERE ua.ua_hash = md5(a.user_agent)) " +
+                    "WHERE a.event_type_id IS NULL");
+            jdbcTemplate.execute("ALTER TABLE login_audit DROP COLUMN event_type");
+            jdbcTemplate.execute("ALTER TABLE login_audit DROP COLUMN user_agent");
+            jdbcTemplate.execute("ALTER TABLE login_audit ALTER COLUMN event_type_id SET NOT NULL");
+            log.info("Migrated {} login_audit rows to dictionary ids", migrated);
+        });
+    }
+
+    @Override
+    public String metricsName() {
+        return "auditDictionary";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("eventTypes", eventTypeIds.size());
+        metrics.put("cachedUserAgents", auditUserAgentIdCache.size());
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,28 @@
+package com.staffmanagement.authservice.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * A login audit event waiting on the write-behind queue.
+ * Mirrors the columns of {@code login_audit}; the user link is resolved by the writer.
+ * {@code repeatCount} is above 1 when the audit policy merged identical events into one row.
+ */
+public record AuditEvent(String cognitoSub,
+                         String email,
+                         String eventType,
+                         String ipAddress,
+                         String userAgent,
+                         boolean success,
+                         String failureReason,
+                         LocalDateTime createdAt,
+                         int repeatCount) {
+
+    public AuditEvent(String cognitoSub, String email, String eventType, String ipAddress, String userAgent,
+                      boolean success, String failureReason, LocalDateTime createdAt) {
+        this(cognitoSub, email, eventType, ipAddress, userAgent, success, failureReason, createdAt, 1);
+    }
+
+    public AuditEvent withRepeatCount(int count) {
+        return new AuditEvent(cognitoSub, email, eventType, ipAddress, userAgent, success, failureReason, createdAt, count);
+    }
+}
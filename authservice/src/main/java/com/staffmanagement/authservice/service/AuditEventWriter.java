@@ -0,0 +1,393 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind pipeline for login audit rows.
+ * Events are buffered in a bounded queue and a single writer thread flushes them as
+ * multi-row inserts, either when a batch fills up or when the flush interval elapses.
+ * Events that overflow the queue or fail to flush go to the {@link AuditSpool} and are
+ * replayed once the database accepts writes again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditEventWriter implements MetricsSource {
+
+    private static final int COLUMNS_PER_ROW = 9;
+    private static final int[] COLUMN_TYPES = {
+            Types.VARCHAR, Types.VARCHAR, Types.SMALLINT, Types.VARCHAR,
+            Types.INTEGER, Types.BOOLEAN, Types.VARCHAR, Types.TIMESTAMP, Types.INTEGER
+    };
+    // Keeps a single statement well below the PostgreSQL bind parameter limit
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+    // Column widths of login_audit and audit_event_type; longer values are truncated rather than rejected
+    private static final int MAX_TEXT = 255;
+    private static final int MAX_EVENT_TYPE = 50;
+    private static final int MAX_IP_ADDRESS = 45;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditRollupService auditRollupService;
+    private final AuditSpool auditSpool;
+    private final AuditDictionary auditDictionary;
+
+    @Value("${audit.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${audit.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${audit.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    // Pause before retrying the spool replay after the database rejected a write
+    @Value("${audit.write-behind.retry-backoff-ms:2000}")
+    private long retryBackoffMs;
+
+    // Spool chunks replayed per round at least; intake spools at most one batch per round meanwhile
+    @Value("${audit.write-behind.replay-chunks-per-round:4}")
+    private int replayChunksPerRound;
+
+    @Value("${audit.write-behind.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private BlockingQueue<AuditEvent> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+    // Spooled records still to replay one at a time after a batch was rejected as invalid
+    private int isolateRemaining;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong truncatedEvents = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (writerThread != null) return;
+        auditSpool.open();
+        running = true;
+        writerThread = new Thread(this::runLoop, "audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Audit write-behind writer started (capacity={}, batchSize={}, flushIntervalMs={})",
+                queueCapacity, batchSize, flushIntervalMs);
+    }
+
+    /**
+     * Stops the writer once it has flushed whatever is still queued.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writerThread == null) return;
+        try {
+            writerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warn("Audit writer did not drain within {} ms, {} events left in queue", shutdownTimeoutMs, queue.size());
+        } else {
+            log.info("Audit writer drained and stopped ({} rows written)", rowsWritten.get());
+        }
+    }
+
+    /**
+     * Queues an event for persistence without blocking the caller.
+     * Returns false if neither the queue nor the spool could take it.
+     */
+    public boolean enqueue(AuditEvent event) {
+        return enqueue(event, AuditPriority.NORMAL);
+    }
+
+    /**
+     * Queues an event; when the queue is full it is appended to the local spool instead.
+     * The priority is only used for logging: shedding decisions are made by {@link AuditPolicy}.
+     */
+    public boolean enqueue(AuditEvent event, AuditPriority priority) {
+        if (queue.offer(event)) {
+            enqueued.incrementAndGet();
+            return true;
+        }
+        if (auditSpool.append(event)) {
+            spooled.incrementAndGet();
+            return true;
+        }
+        long total = dropped.incrementAndGet();
+        if (priority == AuditPriority.SECURITY) {
+            log.error("Security audit event {} lost: queue and spool are both full", event.eventType());
+        }
+        if (total == 1 || total % 1000 == 0) {
+            log.warn("Audit queue full (capacity {}), dropped {} events so far", queueCapacity, total);
+        }
+        return false;
+    }
+
+    /**
+     * Share of the queue currently in use, from 0.0 (empty) to 1.0 (full).
+     */
+    public double queueFillRatio() {
+        return (double) queue.size() / queueCapacity;
+    }
+
+    private void runLoop() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    fillBatch(batch);
+                    if (auditSpool.hasBacklog()) {
+                        // Stay behind the spooled events so they are written in order
+                        spool(batch);
+                    } else if (!flush(batch)) {
+                        spool(batch);
+                    }
+                }
+                if (running && auditSpool.hasBacklog() && !drainSpool()) {
+                    Thread.sleep(retryBackoffMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Audit writer interrupted, {} events left in queue", queue.size());
+                return;
+            } catch (Exception e) {
+                log.error("Unexpected error in audit writer: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Keeps collecting events until the batch is full or the flush interval has passed.
+     */
+    private void fillBatch(List<AuditEvent> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize || !running) return;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return;
+            AuditEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+        }
+    }
+
+    private void spool(List<AuditEvent> batch) {
+        if (auditSpool.append(batch)) {
+            spooled.addAndGet(batch.size());
+        } else {
+            dropped.addAndGet(batch.size());
+            log.error("Audit spool full, lost up to {} audit events", batch.size());
+        }
+    }
+
+    /**
+     * Replays at least {@code replay-chunks-per-round} chunks, then keeps going until a full batch
+     * is waiting in the queue. While there is a backlog every new batch is spooled behind it, so
+     * replaying a single chunk per round would only keep pace with intake and never catch up.
+     * Returns false if the database is still unavailable.
+     */
+    private boolean drainSpool() {
+        for (int chunks = 0; running && auditSpool.hasBacklog(); chunks++) {
+            if (chunks >= replayChunksPerRound && queue.size() >= batchSize) return true;
+            if (!replaySpool()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the next chunk of spooled events and advances the checkpoint in the same transaction.
+     * Returns false if the database is still unavailable.
+     * <p>
+     * A constraint or data error is not retried as is: the rejected chunk is replayed one record
+     * at a time, and a single record that is still rejected is quarantined so it cannot block the spool.
+     */
+    private boolean replaySpool() {
+        AuditSpool.ReplayBatch replay = auditSpool.read(isolateRemaining > 0 ? 1 : batchSize);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                writeBatch(replay.events());
+                auditSpool.saveCheckpoint(replay.endPosition());
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (replay.events().size() > 1) {
+                isolateRemaining = replay.events().size();
+                log.warn("Audit spool replay of {} events was rejected, replaying them one by one: {}",
+                        replay.events().size(), e.getMostSpecificCause().getMessage());
+                return true;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(
+                        status -> auditSpool.quarantine(replay, e.getMostSpecificCause().getMessage()));
+            } catch (Exception quarantineFailure) {
+                log.warn("Could not quarantine audit spool record, retrying in {} ms: {}",
+                        retryBackoffMs, quarantineFailure.getMessage());
+                return false;
+            }
+            auditSpool.commit(replay);
+            isolateRemaining = Math.max(0, isolateRemaining - 1);
+            return true;
+        } catch (Exception e) {
+            log.warn("Audit spool replay failed, retrying in {} ms: {}", retryBackoffMs, e.getMessage());
+            return false;
+        }
+        auditSpool.commit(replay);
+        isolateRemaining = Math.max(0, isolateRemaining - Math.max(1, replay.events().size()));
+        rowsWritten.addAndGet(replay.events().size());
+        log.debug("Replayed {} audit events from spool", replay.events().size());
+        return true;
+    }
+
+    /**
+     * Writes a batch in one transaction. Returns false if the database rejected it.
+     */
+    private boolean flush(List<AuditEvent> batch) {
+        long started = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+            batchesWritten.incrementAndGet();
+            rowsWritten.addAndGet(batch.size());
+            log.debug("Flushed {} audit events", batch.size());
+            return true;
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            log.error("Failed to flush {} audit events, spooling them: {}", batch.size(), e.getMessage());
+            return false;
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            totalFlushNanos.addAndGet(elapsed);
+            lastFlushNanos.set(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    private void writeBatch(List<AuditEvent> events) {
+        if (events.isEmpty()) return;
+        List<AuditEvent> batch = new ArrayList<>(events.size());
+        for (AuditEvent event : events) {
+            batch.add(fitToColumns(event));
+        }
+        Map<String, Integer> userAgentIds = auditDictionary.prepare(batch);
+        for (int from = 0; from < batch.size(); from += MAX_ROWS_PER_STATEMENT) {
+            insertRows(batch.subList(from, Math.min(batch.size(), from + MAX_ROWS_PER_STATEMENT)), userAgentIds);
+        }
+        auditRollupService.apply(batch);
+    }
+
+    /**
+     * Truncates values that are longer than their columns, so one oversized field
+     * (e.g. an exception message as failure reason) cannot make the whole batch fail.
+     */
+    private AuditEvent fitToColumns(AuditEvent event) {
+        AuditEvent fitted = new AuditEvent(
+                truncate(event.cognitoSub(), MAX_TEXT), truncate(event.email(), MAX_TEXT),
+                truncate(event.eventType(), MAX_EVENT_TYPE), truncate(event.ipAddress(), MAX_IP_ADDRESS),
+                event.userAgent(), event.success(), truncate(event.failureReason(), MAX_TEXT),
+                event.createdAt(), event.repeatCount());
+        if (!fitted.equals(event)) {
+            truncatedEvents.incrementAndGet();
+        }
+        return fitted;
+    }
+
+    private static String truncate(String value, int max) {
+        return value == null || value.length() <= max ? value : value.substring(0, max);
+    }
+
+    /**
+     * Inserts the batch as one multi-row statement, linking each row to its AppUser
+     * by cognito sub first and email second.
+     */
+    private void insertRows(List<AuditEvent> batch, Map<String, Integer> userAgentIds) {
+        StringBuilder sql = new StringBuilder(256 + batch.size() * 96)
+                .append("INSERT INTO login_audit ")
+                .append("(user_id, cognito_sub, email, event_type_id, ip_address, user_agent_id, success, failure_reason, created_at, repeat_count) ")
+                .append("SELECT COALESCE(")
+                .append("(SELECT u.id FROM app_users u WHERE u.cognito_sub = v.cognito_sub), ")
+                .append("(SELECT u.id FROM app_users u WHERE u.email = v.email)), ")
+                .append("v.cognito_sub, v.email, v.event_type_id, v.ip_address, v.user_agent_id, v.success, v.failure_reason, v.created_at, v.repeat_count ")
+                .append("FROM (VALUES ");
+        Object[] args = new Object[batch.size() * COLUMNS_PER_ROW];
+        int[] types = new int[args.length];
+        int i = 0;
+        for (AuditEvent event : batch) {
+            if (i > 0) sql.append(", ");
+            System.arraycopy(COLUMN_TYPES, 0, types, i, COLUMNS_PER_ROW);
+            sql.append("(?::varchar, ?::varchar, ?::smallint, ?::varchar, ?::integer, ?::boolean, ?::varchar, ?::timestamp, ?::integer)");
+            args[i++] = event.cognitoSub();
+            args[i++] = event.email();
+            args[i++] = auditDictionary.eventTypeId(event.eventType());
+            args[i++] = event.ipAddress();
+            args[i++] = event.userAgent() == null ? null : userAgentIds.get(event.userAgent());
+            args[i++] = event.success();
+            args[i++] = event.failureReason();
+            args[i++] = Timestamp.valueOf(event.createdAt());
+            args[i++] = event.repeatCount();
+        }
+        sql.append(") AS v(cognito_sub, email, event_type_id, ip_address, user_agent_id, success, failure_reason, created_at, repeat_count)");
+        jdbcTemplate.update(sql.toString(), args, types);
+    }
+
+    @Override
+    public String metricsName() {
+        return "auditWriter";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long batches = batchesWritten.get() + failedBatches.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("enqueued", enqueued.get());
+        metrics.put("spooled", spooled.get());
+        metrics.put("dropped", dropped.get());
+        metrics.put("batchesWritten", batchesWritten.get());
+        metrics.put("rowsWritten", rowsWritten.get());
+        metrics.put("failedBatches", failedBatches.get());
+        metrics.put("truncatedEvents", truncatedEvents.get());
+        metrics.put("lastFlushMillis", lastFlushNanos.get() / 1_000_000.0);
+        metrics.put("maxFlushMillis", maxFlushNanos.get() / 1_000_000.0);
+        metrics.put("avgFlushMillis", batches == 0 ? 0.0 : totalFlushNanos.get() / 1_000_000.0 / batches);
+        return metrics;
+    }
+}
@@ -0,0 +1,270 @@
+package com.staffmanagement.authservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.staffmanagement.authservice.dto.request.AuditLogFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams the audit log as CSV or NDJSON straight from a forward-only cursor.
+ * Rows are written as they are fetched, so memory use does not depend on the export size.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditLogExportService {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            if (value == null || value.isBlank()) return CSV;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private static final String[] COLUMNS = {
+            "id", "userId", "cognitoSub", "userEmail", "displayName", "email",
+            "eventType", "ipAddress", "userAgent", "success", "failureReason", "createdAt", "repeatCount"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final AuditDictionary auditDictionary;
+
+    @Value("${audit.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * Writes every audit row matching the filter to {@code out}, newest first.
+     * The read-only transaction keeps autocommit off, which lets the PostgreSQL driver
+     * fetch {@code fetchSize} rows at a time instead of the whole result.
+     * Event types and user agents are decoded through the dictionary cache rather than joined.
+     * A failed write (e.g. the client disconnected) surfaces as {@link UncheckedIOException}
+     * and closes the cursor, ending the query.
+     *
+     * @return number of rows written
+     */
+    @Transactional(readOnly = true)
+    public long export(AuditLogFilter filter, Format format, OutputStream out) throws IOException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT a.id, u.id AS user_id, a.cognito_sub, COALESCE(u.email, a.email) AS user_email, " +
+                "u.display_name, a.email, a.event_type_id, a.ip_address, a.user_agent_id, a.success, " +
+                "a.failure_reason, a.created_at, a.repeat_count " +
+                "FROM login_audit a LEFT JOIN app_users u ON u.id = a.user_id WHERE 1 = 1");
+        if (filter.userId() != null) {
+            sql.append(" AND u.id = ?");
+            params.add(filter.userId());
+        }
+        if (filter.rangeStart() != null) {
+            sql.append(" AND a.created_at >= ?");
+            params.add(Timestamp.valueOf(filter.rangeStart()));
+        }
+        if (filter.rangeEnd() != null) {
+            sql.append(" AND a.created_at <= ?");
+            params.add(Timestamp.valueOf(filter.rangeEnd()));
+        }
+        if (filter.eventType() != null && !filter.eventType().isBlank()) {
+            sql.append(" AND a.event_type_id = (SELECT t.id FROM audit_event_type t WHERE t.name = ?)");
+            params.add(filter.eventType().trim());
+        }
+        if (filter.success() != null) {
+            sql.append(" AND a.success = ?");
+            params.add(filter.success());
+        }
+        if (filter.search() != null && !filter.search().isBlank()) {
+            // Same fields as the audit log page's search box, matched case-insensitively as substrings
+            String pattern = "%" + escapeLike(filter.search().trim()) + "%";
+            sql.append(" AND (a.email ILIKE ? OR u.email ILIKE ? OR a.ip_address ILIKE ? OR a.cognito_sub ILIKE ?")
+                    .append(" OR a.event_type_id IN (SELECT t.id FROM audit_event_type t WHERE t.name ILIKE ?))");
+            for (int i = 0; i < 5; i++) {
+                params.add(pattern);
+            }
+        }
+        sql.append(" ORDER BY a.created_at DESC, a.id DESC");
+
+        RowSink sink = format == Format.NDJSON ? new NdjsonSink(out) : new CsvSink(out);
+        long[] rows = {0};
+        RowCallbackHandler handler = rs -> {
+            try {
+                sink.write(readRow(rs));
+                rows[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        }, handler);
+
+        sink.finish();
+        log.debug("Exported {} audit rows as {}", rows[0], format);
+        return rows[0];
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * One export row in {@link #COLUMNS} order, with dictionary ids replaced by their values.
+     */
+    private Object[] readRow(ResultSet rs) throws SQLException {
+        long userId = rs.getLong(2);
+        Long user = rs.wasNull() ? null : userId;
+        short eventTypeId = rs.getShort(7);
+        int userAgentId = rs.getInt(9);
+        String userAgent = rs.wasNull() ? null : auditDictionary.userAgent(userAgentId);
+        Timestamp createdAt = rs.getTimestamp(12);
+        return new Object[] {
+                rs.getLong(1), user, rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6),
+                auditDictionary.eventTypeName(eventTypeId), rs.getString(8), userAgent, rs.getBoolean(10),
+                rs.getString(11), createdAt == null ? null : createdAt.toLocalDateTime(), rs.getInt(13)
+        };
+    }
+
+    private interface RowSink {
+        void write(Object[] row) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvSink implements RowSink {
+
+        private final Writer writer;
+
+        CsvSink(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) writer.write(',');
+                if (row[i] instanceof String text) {
+                    writeCell(neutralizeFormula(text));
+                } else if (row[i] != null) {
+                    writeCell(row[i].toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        // Text from user-controlled fields (user agent, email) must not run as a spreadsheet formula
+        private static String neutralizeFormula(String value) {
+            if (value.isEmpty()) return value;
+            char first = value.charAt(0);
+            return first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r'
+                    ? "'" + value : value;
+        }
+
+        private void writeCell(String value) throws IOException {
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private final class NdjsonSink implements RowSink {
+
+        private final JsonGenerator generator;
+
+        NdjsonSink(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            // The response stream belongs to the servlet container
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Rows are separated by the newline written after each object
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < row.length; i++) {
+                Object value = row[i];
+                generator.writeFieldName(COLUMNS[i]);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Long l) {
+                    generator.writeNumber(l);
+                } else if (value instanceof Integer n) {
+                    generator.writeNumber(n);
+                } else if (value instanceof Boolean b) {
+                    generator.writeBoolean(b);
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+}
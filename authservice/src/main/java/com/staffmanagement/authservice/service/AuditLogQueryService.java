@@ -0,0 +1,87 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.dto.common.CursorPage;
+import com.staffmanagement.authservice.dto.request.AuditLogFilter;
+import com.staffmanagement.authservice.dto.response.LoginAuditDTO;
+import com.staffmanagement.authservice.repository.LoginAuditRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Keyset-paginated reads of the login audit log, newest first.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class AuditLogQueryService {
+
+    private final LoginAuditRepository loginAuditRepository;
+
+    @Value("${audit.query.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${audit.query.max-page-size:500}")
+    private int maxPageSize;
+
+    /**
+     * Returns one page of audit rows matching the filter.
+     * @param cursor value of {@code nextCursor} from the previous page, or null for the first page
+     * @param size requested page size, capped at the configured maximum
+     */
+    public CursorPage<LoginAuditDTO> getAuditLogs(AuditLogFilter filter, String cursor, Integer size) {
+        int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+
+        LocalDateTime cursorCreatedAt = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decodeCursor(cursor);
+            cursorCreatedAt = LocalDateTime.parse(parts[0]);
+            cursorId = Long.parseLong(parts[1]);
+        }
+
+        // Fetch one extra row to find out whether another page exists without a count query
+        List<LoginAuditDTO> rows = loginAuditRepository.findPage(filter, cursorCreatedAt, cursorId, pageSize + 1);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            LoginAuditDTO last = rows.get(rows.size() - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+        }
+
+        return CursorPage.<LoginAuditDTO>builder()
+                .content(rows)
+                .size(pageSize)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            // Validate both parts up front so callers get a single error type
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
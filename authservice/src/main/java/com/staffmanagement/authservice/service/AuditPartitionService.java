@@ -0,0 +1,181 @@
+package com.staffmanagement.authservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps {@code login_audit} as a table range-partitioned by month on {@code created_at}.
+ * On startup an existing plain table is converted in place. A daily job creates upcoming
+ * partitions ahead of time and enforces retention by dropping whole partitions.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AuditPartitionService implements CommandLineRunner {
+
+    private static final String TABLE = "login_audit";
+    private static final String DEFAULT_PARTITION = "login_audit_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile("login_audit_y(\\d{4})m(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${audit.partition.months-ahead:3}")
+    private int monthsAhead;
+
+    // 0 keeps every partition forever
+    @Value("${audit.retention-months:0}")
+    private int retentionMonths;
+
+    @Override
+    public void run(String... args) {
+        String relkind = jdbcTemplate.query(
+                "SELECT c.relkind FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "WHERE n.nspname = 'public' AND c.relname = ?",
+                rs -> rs.next() ? rs.getString(1) : null, TABLE);
+        if (relkind == null) {
+            log.warn("Table {} not found, skipping partition setup", TABLE);
+            return;
+        }
+        if ("r".equals(relkind)) {
+            convertToPartitioned();
+        }
+        maintainPartitions();
+    }
+
+    /**
+     * Creates missing partitions up to {@code monthsAhead} months from now and drops
+     * partitions that fell out of the retention window.
+     */
+    @Scheduled(cron = "${audit.partition.maintenance-cron:0 15 3 * * *}")
+    public void maintainPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            try {
+                ensurePartition(current.plusMonths(i));
+            } catch (Exception e) {
+                log.error("Failed to create audit partition for {}: {}", current.plusMonths(i), e.getMessage(), e);
+            }
+        }
+        if (retentionMonths > 0) {
+            dropExpiredPartitions(current.minusMonths(retentionMonths));
+        }
+    }
+
+    /**
+     * Replaces the plain table with a partitioned one holding the same columns and rows.
+     * Runs as a single transaction, so a failure leaves the original table untouched.
+     */
+    private void convertToPartitioned() {
+        log.info("Converting {} to a monthly range-partitioned table", TABLE);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE login_audit RENAME TO login_audit_unpartitioned");
+            // Free up index names that the partitioned table reuses
+            jdbcTemplate.execute("ALTER TABLE login_audit_unpartitioned RENAME CONSTRAINT login_audit_pkey TO login_audit_unpartitioned_pkey");
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_login_audit_created_at_id RENAME TO idx_login_audit_unpartitioned_created_at_id");
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_login_audit_user_created_at RENAME TO idx_login_audit_unpartitioned_user_created_at");
+            jdbcTemplate.execute("UPDATE login_audit_unpartitioned SET created_at = now() WHERE created_at IS NULL");
+
+            jdbcTemplate.execute("CREATE TABLE login_audit (LIKE login_audit_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS) " +
+                    "PARTITION BY RANGE (created_at)");
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS login_audit_row_id_seq");
+            jdbcTemplate.execute("ALTER TABLE login_audit ALTER COLUMN id SET DEFAULT nextval('login_audit_row_id_seq')");
+            jdbcTemplate.execute("ALTER SEQUENCE login_audit_row_id_seq OWNED BY login_audit.id");
+            // The partition key has to be part of the primary key
+            jdbcTemplate.execute("ALTER TABLE login_audit ADD CONSTRAINT login_audit_pkey PRIMARY KEY (id, created_at)");
+            jdbcTemplate.execute("ALTER TABLE login_audit ADD CONSTRAINT fk_login_audit_user " +
+                    "FOREIGN KEY (user_id) REFERENCES app_users (id)");
+            jdbcTemplate.execute("CREATE INDEX idx_login_audit_created_at_id ON login_audit (created_at, id)");
+            jdbcTemplate.execute("CREATE INDEX idx_login_audit_user_created_at ON login_audit (user_id, created_at)");
+
+            LocalDate oldest = jdbcTemplate.queryForObject(
+                    "SELECT CAST(MIN(created_at) AS date) FROM login_audit_unpartitioned", LocalDate.class);
+            YearMonth month = oldest != null ? YearMonth.from(oldest) : YearMonth.now();
+            YearMonth last = YearMonth.now().plusMonths(monthsAhead);
+            for (; !month.isAfter(last); month = month.plusMonths(1)) {
+                createPartition(month);
+            }
+            jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF login_audit DEFAULT");
+
+            int copied = jdbcTemplate.update("INSERT INTO login_audit SELECT * FROM login_audit_unpartitioned");
+            jdbcTemplate.execute("SELECT setval('login_audit_row_id_seq', COALESCE((SELECT MAX(id) FROM login_audit), 0) + 1, false)");
+            jdbcTemplate.execute("DROP TABLE login_audit_unpartitioned");
+            log.info("Converted {} to partitioned storage ({} rows moved)", TABLE, copied);
+        });
+    }
+
+    private void ensurePartition(YearMonth month) {
+        String name = partitionName(month);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, "public." + name);
+        if (Boolean.TRUE.equals(exists)) return;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Boolean defaultHasRows = hasDefaultPartition() && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE created_at >= ? AND created_at < ?)",
+                    Boolean.class, month.atDay(1), month.plusMonths(1).atDay(1)));
+            if (!defaultHasRows) {
+                createPartition(month);
+                return;
+            }
+            // Rows for this month landed in the default partition: move them into the new partition
+            jdbcTemplate.execute("ALTER TABLE login_audit DETACH PARTITION " + DEFAULT_PARTITION);
+            createPartition(month);
+            String range = " WHERE created_at >= '" + month.atDay(1) + "' AND created_at < '" + month.plusMonths(1).atDay(1) + "'";
+            jdbcTemplate.update("INSERT INTO login_audit SELECT * FROM " + DEFAULT_PARTITION + range);
+            jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + range);
+            jdbcTemplate.execute("ALTER TABLE login_audit ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+        });
+        log.info("Created audit partition {}", name);
+    }
+
+    private void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF login_audit " +
+                "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    /**
+     * Detaches and drops every monthly partition that ends on or before the start of {@code oldestKept}.
+     */
+    private void dropExpiredPartitions(YearMonth oldestKept) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = 'public.login_audit'::regclass", String.class);
+        for (String partition : partitions) {
+            Matcher m = PARTITION_NAME.matcher(partition);
+            if (!m.matches()) continue;
+            YearMonth month = YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+            if (!month.isBefore(oldestKept)) continue;
+            try {
+                jdbcTemplate.execute("ALTER TABLE login_audit DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                log.info("Dropped audit partition {} (retention {} months)", partition, retentionMonths);
+            } catch (Exception e) {
+                log.error("Failed to drop audit partition {}: {}", partition, e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean hasDefaultPartition() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, "public." + DEFAULT_PARTITION));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("login_audit_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+}
@@ -0,0 +1,210 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Decides what happens to an audit event before it reaches the write-behind queue.
+ * <ul>
+ *   <li>Events of coalescable types are held for a short window; identical repeats from the
+ *   same user, IP and user agent only bump a counter and are written as one row.</li>
+ *   <li>When the queue fills up, low-priority events are shed first, then normal ones.
+ *   Security events are never shed.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditPolicy implements MetricsSource {
+
+    private final AuditEventWriter auditEventWriter;
+
+    @Value("${audit.policy.security-event-types:LOGIN_FAILED,MOBILE_LOGIN_FAILED,MFA_ENABLED,MFA_DISABLED,LOGOUT}")
+    private String securityEventTypesCsv;
+
+    @Value("${audit.policy.low-priority-event-types:PROFILE_FETCH,PROFILE_UPDATE}")
+    private String lowPriorityEventTypesCsv;
+
+    @Value("${audit.policy.coalesce-event-types:PROFILE_FETCH,PROFILE_UPDATE}")
+    private String coalesceEventTypesCsv;
+
+    @Value("${audit.policy.coalesce-window-ms:60000}")
+    private long coalesceWindowMs;
+
+    // Upper bound on open windows so a flood of distinct keys cannot grow the map without limit
+    @Value("${audit.policy.max-open-windows:10000}")
+    private int maxOpenWindows;
+
+    // Queue fill ratio above which LOW events are dropped
+    @Value("${audit.policy.shed-low-above:0.5}")
+    private double shedLowAbove;
+
+    // Queue fill ratio above which NORMAL events are dropped too
+    @Value("${audit.policy.shed-normal-above:0.9}")
+    private double shedNormalAbove;
+
+    private Set<String> securityEventTypes;
+    private Set<String> lowPriorityEventTypes;
+    private Set<String> coalesceEventTypes;
+
+    private record CoalesceKey(String cognitoSub, String email, String eventType, String ipAddress,
+                               String userAgent, boolean success) {
+
+        static CoalesceKey of(AuditEvent event) {
+            return new CoalesceKey(event.cognitoSub(), event.email(), event.eventType(), event.ipAddress(),
+                    event.userAgent(), event.success());
+        }
+    }
+
+    private static final class Window {
+        private final AuditEvent first;
+        private final long openedAt;
+        private int count = 1;
+
+        Window(AuditEvent first, long openedAt) {
+            this.first = first;
+            this.openedAt = openedAt;
+        }
+    }
+
+    private final ConcurrentHashMap<CoalesceKey, Window> windows = new ConcurrentHashMap<>();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong shedLow = new AtomicLong();
+    private final AtomicLong shedNormal = new AtomicLong();
+    private final AtomicLong securityRejected = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        securityEventTypes = parseCsv(securityEventTypesCsv);
+        lowPriorityEventTypes = parseCsv(lowPriorityEventTypesCsv);
+        coalesceEventTypes = parseCsv(coalesceEventTypesCsv);
+    }
+
+    /**
+     * Security-relevant types and any failed event are SECURITY; configured noisy types are LOW.
+     */
+    public AuditPriority classify(AuditEvent event) {
+        if (!event.success() || securityEventTypes.contains(event.eventType())) {
+            return AuditPriority.SECURITY;
+        }
+        if (lowPriorityEventTypes.contains(event.eventType())) {
+            return AuditPriority.LOW;
+        }
+        return AuditPriority.NORMAL;
+    }
+
+    /**
+     * Applies coalescing and load shedding, then hands the event to the writer.
+     * Returns false if the event was shed or rejected; a merged event counts as accepted.
+     */
+    public boolean submit(AuditEvent event) {
+        received.incrementAndGet();
+        AuditPriority priority = classify(event);
+
+        if (priority != AuditPriority.SECURITY && coalesceEventTypes.contains(event.eventType())) {
+            CoalesceKey key = CoalesceKey.of(event);
+            boolean[] merged = {false};
+            if (windows.size() < maxOpenWindows || windows.containsKey(key)) {
+                windows.compute(key, (k, window) -> {
+                    if (window == null) {
+                        return new Window(event, System.currentTimeMillis());
+                    }
+                    window.count++;
+                    merged[0] = true;
+                    return window;
+                });
+                if (merged[0]) {
+                    coalesced.incrementAndGet();
+                }
+                return true;
+            }
+        }
+        return offer(event, priority);
+    }
+
+    /**
+     * Writes out windows that have been open for longer than the coalescing window.
+     */
+    @Scheduled(fixedDelayString = "${audit.policy.sweep-interval-ms:1000}")
+    public void flushExpiredWindows() {
+        long cutoff = System.currentTimeMillis() - coalesceWindowMs;
+        flushWindows(cutoff);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushWindows(Long.MAX_VALUE);
+    }
+
+    private void flushWindows(long openedBefore) {
+        Iterator<Map.Entry<CoalesceKey, Window>> it = windows.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<CoalesceKey, Window> entry = it.next();
+            if (entry.getValue().openedAt > openedBefore) continue;
+            // remove(key, value) wins against a concurrent compute that still bumps the same window
+            Window window = entry.getValue();
+            if (!windows.remove(entry.getKey(), window)) continue;
+            AuditEvent event = window.count > 1 ? window.first.withRepeatCount(window.count) : window.first;
+            offer(event, classify(event));
+        }
+    }
+
+    private boolean offer(AuditEvent event, AuditPriority priority) {
+        double fill = auditEventWriter.queueFillRatio();
+        if (priority == AuditPriority.LOW && fill >= shedLowAbove) {
+            shedLow.addAndGet(event.repeatCount());
+            return false;
+        }
+        if (priority == AuditPriority.NORMAL && fill >= shedNormalAbove) {
+            shedNormal.addAndGet(event.repeatCount());
+            return false;
+        }
+        boolean accepted = auditEventWriter.enqueue(event, priority);
+        if (!accepted && priority == AuditPriority.SECURITY) {
+            securityRejected.incrementAndGet();
+            log.error("Security audit event {} for {} could not be queued", event.eventType(), event.email());
+        }
+        return accepted;
+    }
+
+    private static Set<String> parseCsv(String csv) {
+        return Arrays.stream(csv.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public String metricsName() {
+        return "auditPolicy";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("received", received.get());
+        metrics.put("coalesced", coalesced.get());
+        metrics.put("openWindows", windows.size());
+        metrics.put("shedLow", shedLow.get());
+        metrics.put("shedNormal", shedNormal.get());
+        metrics.put("securityRejected", securityRejected.get());
+        return metrics;
+    }
+}
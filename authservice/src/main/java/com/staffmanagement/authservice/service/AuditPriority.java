@@ -0,0 +1,13 @@
+package com.staffmanagement.authservice.service;
+
+/**
+ * How important an audit event is when the write-behind queue is under pressure.
+ */
+public enum AuditPriority {
+    /** Login failures, MFA changes, logouts: never shed. */
+    SECURITY,
+    /** Regular logins and anything not classified otherwise. */
+    NORMAL,
+    /** High-volume, low-value events such as profile reads: shed first. */
+    LOW
+}
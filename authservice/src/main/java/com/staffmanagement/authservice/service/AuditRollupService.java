@@ -0,0 +1,234 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.dto.response.AuditStatsDTO;
+import com.staffmanagement.authservice.entity.LoginAuditRollup;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains hourly and daily audit counters and answers statistics queries from them.
+ * Rollups are updated in the same transaction as the audit rows they summarise.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditRollupService implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Event types counted as logins; matches the dashboard's original LOGIN-only filter
+    @Value("${audit.stats.login-event-types:LOGIN}")
+    private String loginEventTypesCsv;
+
+    // Range used when no start is given, so an open query never scans all of login_audit_daily_user
+    @Value("${audit.stats.default-range-days:30}")
+    private int defaultRangeDays;
+
+    private record BucketKey(String granularity, LocalDateTime bucketStart, String eventType, boolean success) {}
+
+    private record DailyUserKey(LocalDate activityDate, String userKey) {}
+
+    /**
+     * Adds a batch of freshly written audit events to the rollups.
+     * Must run inside the transaction that inserts the audit rows.
+     */
+    public void apply(List<AuditEvent> batch) {
+        Map<BucketKey, Long> counts = new HashMap<>();
+        Set<DailyUserKey> dailyUsers = new HashSet<>();
+        for (AuditEvent event : batch) {
+            LocalDateTime hour = event.createdAt().truncatedTo(ChronoUnit.HOURS);
+            LocalDateTime day = event.createdAt().truncatedTo(ChronoUnit.DAYS);
+            // A coalesced row stands for repeatCount events
+            long occurrences = event.repeatCount();
+            counts.merge(new BucketKey(LoginAuditRollup.HOUR, hour, event.eventType(), event.success()), occurrences, Long::sum);
+            counts.merge(new BucketKey(LoginAuditRollup.DAY, day, event.eventType(), event.success()), occurrences, Long::sum);
+
+            String userKey = event.email() != null ? event.email() : event.cognitoSub();
+            if (userKey != null) {
+                dailyUsers.add(new DailyUserKey(day.toLocalDate(), userKey));
+            }
+        }
+        upsertCounts(counts);
+        insertDailyUsers(dailyUsers);
+    }
+
+    private void upsertCounts(Map<BucketKey, Long> counts) {
+        if (counts.isEmpty()) return;
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO login_audit_rollup (granularity, bucket_start, event_type, success, event_count) VALUES ");
+        Object[] args = new Object[counts.size() * 5];
+        int[] types = new int[args.length];
+        int i = 0;
+        for (Map.Entry<BucketKey, Long> entry : counts.entrySet()) {
+            if (i > 0) sql.append(", ");
+            sql.append("(?, ?, ?, ?, ?)");
+            BucketKey key = entry.getKey();
+            types[i] = Types.VARCHAR;
+            args[i++] = key.granularity();
+            types[i] = Types.TIMESTAMP;
+            args[i++] = Timestamp.valueOf(key.bucketStart());
+            types[i] = Types.VARCHAR;
+            args[i++] = key.eventType();
+            types[i] = Types.BOOLEAN;
+            args[i++] = key.success();
+            types[i] = Types.BIGINT;
+            args[i++] = entry.getValue();
+        }
+        sql.append(" ON CONFLICT (granularity, bucket_start, event_type, success) ")
+                .append("DO UPDATE SET event_count = login_audit_rollup.event_count + EXCLUDED.event_count");
+        jdbcTemplate.update(sql.toString(), args, types);
+    }
+
+    private void insertDailyUsers(Set<DailyUserKey> dailyUsers) {
+        if (dailyUsers.isEmpty()) return;
+        StringBuilder sql = new StringBuilder("INSERT INTO login_audit_daily_user (activity_date, user_key) VALUES ");
+        Object[] args = new Object[dailyUsers.size() * 2];
+        int[] types = new int[args.length];
+        int i = 0;
+        for (DailyUserKey key : dailyUsers) {
+            if (i > 0) sql.append(", ");
+            sql.append("(?, ?)");
+            types[i] = Types.DATE;
+            args[i++] = Date.valueOf(key.activityDate());
+            types[i] = Types.VARCHAR;
+            args[i++] = key.userKey();
+        }
+        sql.append(" ON CONFLICT (activity_date, user_key) DO NOTHING");
+        jdbcTemplate.update(sql.toString(), args, types);
+    }
+
+    /**
+     * Answers a statistics query from the rollups alone.
+     * Whole days inside the range come from DAY buckets and the partial days at either edge
+     * from HOUR buckets, so the cost depends on the range length, not on the audit history.
+     * Bounds are widened to whole hours; unique users are counted per whole day.
+     * Without a start the range covers the last {@code audit.stats.default-range-days} days.
+     */
+    @Transactional(readOnly = true)
+    public AuditStatsDTO getStats(LocalDateTime rangeStart, LocalDateTime rangeEnd) {
+        LocalDateTime to = ceilToHour(rangeEnd != null ? rangeEnd : LocalDateTime.now());
+        LocalDateTime from = rangeStart != null
+                ? rangeStart.truncatedTo(ChronoUnit.HOURS)
+                : to.minusDays(defaultRangeDays).truncatedTo(ChronoUnit.DAYS);
+        if (!to.isAfter(from)) {
+            to = from.plusHours(1);
+        }
+
+        LocalDateTime dayFrom = ceilToDay(from);
+        LocalDateTime dayTo = to.truncatedTo(ChronoUnit.DAYS);
+        if (!dayTo.isAfter(dayFrom)) {
+            // Range does not contain a whole day: answer entirely from hour buckets
+            dayFrom = to;
+            dayTo = to;
+        }
+
+        List<AuditStatsDTO.EventCount> byEventType = jdbcTemplate.query(
+                "SELECT event_type, success, SUM(event_count) AS total FROM login_audit_rollup " +
+                "WHERE (granularity = 'DAY' AND bucket_start >= ? AND bucket_start < ?) " +
+                "OR (granularity = 'HOUR' AND ((bucket_start >= ? AND bucket_start < ?) OR (bucket_start >= ? AND bucket_start < ?))) " +
+                "GROUP BY event_type, success ORDER BY event_type, success DESC",
+                (rs, rowNum) -> AuditStatsDTO.EventCount.builder()
+                        .eventType(rs.getString("event_type"))
+                        .success(rs.getBoolean("success"))
+                        .count(rs.getLong("total"))
+                        .build(),
+                Timestamp.valueOf(dayFrom), Timestamp.valueOf(dayTo),
+                Timestamp.valueOf(from), Timestamp.valueOf(dayFrom),
+                Timestamp.valueOf(dayTo), Timestamp.valueOf(to));
+
+        Long uniqueUsers = jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT user_key) FROM login_audit_daily_user WHERE activity_date >= ? AND activity_date < ?",
+                Long.class,
+                Date.valueOf(from.toLocalDate()), Date.valueOf(ceilToDay(to).toLocalDate()));
+
+        Set<String> loginEventTypes = Arrays.stream(loginEventTypesCsv.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toSet());
+
+        long total = 0;
+        long successfulLogins = 0;
+        long failedLogins = 0;
+        for (AuditStatsDTO.EventCount count : byEventType) {
+            total += count.getCount();
+            if (loginEventTypes.contains(count.getEventType())) {
+                if (count.isSuccess()) {
+                    successfulLogins += count.getCount();
+                } else {
+                    failedLogins += count.getCount();
+                }
+            }
+        }
+
+        return AuditStatsDTO.builder()
+                .rangeStart(from)
+                .rangeEnd(to)
+                .totalEvents(total)
+                .successfulLogins(successfulLogins)
+                .failedLogins(failedLogins)
+                .uniqueUsers(uniqueUsers != null ? uniqueUsers : 0)
+                .byEventType(new ArrayList<>(byEventType))
+                .build();
+    }
+
+    /**
+     * Builds the rollups from existing audit history the first time the service starts
+     * with an empty rollup table.
+     */
+    @Override
+    @Transactional
+    public void run(String... args) {
+        Boolean hasRollups = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM login_audit_rollup)", Boolean.class);
+        Boolean hasAudits = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM login_audit)", Boolean.class);
+        if (Boolean.TRUE.equals(hasRollups) || !Boolean.TRUE.equals(hasAudits)) {
+            return;
+        }
+
+        log.info("Backfilling audit rollups from existing login_audit history");
+        for (String granularity : List.of(LoginAuditRollup.HOUR, LoginAuditRollup.DAY)) {
+            String unit = granularity.toLowerCase();
+            jdbcTemplate.update(
+                    "INSERT INTO login_audit_rollup (granularity, bucket_start, event_type, success, event_count) " +
+                    "SELECT '" + granularity + "', date_trunc('" + unit + "', a.created_at), t.name, a.success, SUM(a.repeat_count) " +
+                    "FROM login_audit a JOIN audit_event_type t ON t.id = a.event_type_id GROUP BY 2, 3, 4");
+        }
+        jdbcTemplate.update(
+                "INSERT INTO login_audit_daily_user (activity_date, user_key) " +
+                "SELECT DISTINCT CAST(created_at AS date), COALESCE(email, cognito_sub) FROM login_audit " +
+                "WHERE COALESCE(email, cognito_sub) IS NOT NULL " +
+                "ON CONFLICT (activity_date, user_key) DO NOTHING");
+        log.info("Audit rollup backfill completed");
+    }
+
+    private static LocalDateTime ceilToHour(LocalDateTime time) {
+        LocalDateTime floor = time.truncatedTo(ChronoUnit.HOURS);
+        return floor.equals(time) ? floor : floor.plusHours(1);
+    }
+
+    private static LocalDateTime ceilToDay(LocalDateTime time) {
+        LocalDateTime floor = time.truncatedTo(ChronoUnit.DAYS);
+        return floor.equals(time) ? floor : floor.plusDays(1);
+    }
+}
@@ -0,0 +1,542 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only spool for audit events the database could not take in time.
+ * <p>
+ * The spool is a sequence of fixed-size memory-mapped segment files. Every record is
+ * framed as {@code [int length][int crc32][payload]}; a zero length marks the end of the
+ * written data and {@link #SEGMENT_END} tells the reader to continue in the next segment.
+ * Positions are byte offsets across all segments. The replay position is kept in
+ * {@code audit_spool_checkpoint} and committed together with the replayed rows.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditSpool implements MetricsSource {
+
+    private static final int HEADER_BYTES = 8;
+    private static final int SEGMENT_END = -1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String SPOOL_ID_FILE = "spool.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Must survive restarts (e.g. a mounted volume): the segments are the only copy of unreplayed events.
+    // When unset, audit-spool under the working directory is used.
+    @Value("${audit.spool.dir:}")
+    private String spoolDir;
+
+    // Checkpoint key; when unset it is generated once and kept in the spool directory
+    @Value("${audit.spool.id:}")
+    private String spoolId;
+
+    @Value("${audit.spool.segment-bytes:16777216}")
+    private int segmentBytes;
+
+    @Value("${audit.spool.max-segments:64}")
+    private int maxSegments;
+
+    /**
+     * Events read from the spool together with the position just after the last one.
+     * {@code startPosition} is where the first event begins.
+     */
+    public record ReplayBatch(List<AuditEvent> events, long startPosition, long endPosition) {}
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private boolean open;
+    private long readPosition;
+    private long writePosition;
+    // Segments written since the last sync
+    private final Set<Segment> dirtySegments = new HashSet<>();
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong corruptRecords = new AtomicLong();
+    private final AtomicLong quarantined = new AtomicLong();
+
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Maps the existing segments and restores the read and write positions.
+     * Safe to call more than once; later calls do nothing.
+     */
+    public void open() {
+        lock.lock();
+        try {
+            if (open) return;
+            if (spoolDir == null || spoolDir.isBlank()) {
+                spoolDir = Paths.get(System.getProperty("user.dir"), "audit-spool").toString();
+                log.warn("audit.spool.dir is not set, spooling audit events to {}; set it to a directory that survives restarts",
+                        spoolDir);
+            }
+            Path dir = Paths.get(spoolDir);
+            Files.createDirectories(dir);
+            if (dir.toAbsolutePath().startsWith(Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath())) {
+                log.warn("Audit spool directory {} is under the temp directory and may not survive a restart", dir);
+            }
+            spoolId = resolveSpoolId(dir);
+
+            Long checkpoint = jdbcTemplate.query(
+                    "SELECT position FROM audit_spool_checkpoint WHERE spool_id = ?",
+                    rs -> rs.next() ? rs.getLong(1) : null, spoolId);
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Long index = segmentIndex(file);
+                    if (index != null) segments.put(index, map(file));
+                }
+            }
+
+            long start = checkpoint != null ? checkpoint
+                    : segments.isEmpty() ? 0 : segments.firstKey() * segmentBytes;
+            readPosition = start;
+            writePosition = scanForEnd(start);
+            deleteSegmentsBefore(readPosition / segmentBytes);
+            open = true;
+            if (writePosition > readPosition) {
+                log.warn("Audit spool {} holds {} bytes of events waiting for replay", spoolId, writePosition - readPosition);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open audit spool in " + spoolDir, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends events in order. Returns false if some of them did not fit within {@code max-segments};
+     * the events before that point are kept.
+     */
+    public boolean append(List<AuditEvent> events) {
+        if (events.isEmpty()) return true;
+        lock.lock();
+        int written = 0;
+        try {
+            open();
+            for (AuditEvent event : events) {
+                if (!appendRecord(encode(event))) break;
+                written++;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to append to audit spool: {}", e.getMessage(), e);
+        } finally {
+            lock.unlock();
+        }
+        appended.addAndGet(written);
+        rejected.addAndGet(events.size() - written);
+        return written == events.size();
+    }
+
+    public boolean append(AuditEvent event) {
+        return append(List.of(event));
+    }
+
+    public boolean hasBacklog() {
+        lock.lock();
+        try {
+            return open && readPosition < writePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to {@code max} events from the replay position without consuming them.
+     * Call {@link #saveCheckpoint} inside the transaction that writes them, then {@link #commit}.
+     */
+    public ReplayBatch read(int max) {
+        lock.lock();
+        try {
+            List<AuditEvent> events = new ArrayList<>(Math.min(max, 1024));
+            long position = readPosition;
+            long start = -1;
+            while (events.size() < max && position < writePosition) {
+                Segment segment = segments.get(position / segmentBytes);
+                int offset = (int) (position % segmentBytes);
+                if (segment == null || offset + HEADER_BYTES > segmentBytes) {
+                    position = nextSegmentStart(position);
+                    continue;
+                }
+                int length = segment.buffer.getInt(offset);
+                if (length == SEGMENT_END) {
+                    position = nextSegmentStart(position);
+                    continue;
+                }
+                byte[] payload = new byte[length];
+                segment.buffer.get(offset + HEADER_BYTES, payload);
+                if (start < 0) start = position;
+                position += HEADER_BYTES + length;
+                try {
+                    events.add(decode(payload));
+                } catch (IOException | RuntimeException e) {
+                    // Already checked on open/append; skip rather than block the spool forever
+                    corruptRecords.incrementAndGet();
+                    log.error("Skipping unreadable audit spool record at {}: {}", position, e.getMessage());
+                }
+            }
+            return new ReplayBatch(events, start < 0 ? position : start, position);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the replay position. Must run in the transaction that writes the replayed rows.
+     */
+    public void saveCheckpoint(long position) {
+        jdbcTemplate.update(
+                "INSERT INTO audit_spool_checkpoint (spool_id, position, updated_at) VALUES (?, ?, now()) " +
+                "ON CONFLICT (spool_id) DO UPDATE SET position = EXCLUDED.position, updated_at = EXCLUDED.updated_at",
+                spoolId, position);
+    }
+
+    /**
+     * Sets the events of a batch aside in {@code audit_spool_quarantine} and stores the replay
+     * position after them. Used for a single record the database rejects as invalid, which would
+     * otherwise block replay forever. Must run in a transaction; call {@link #commit} afterwards.
+     */
+    public void quarantine(ReplayBatch batch, String error) {
+        String reason = error == null || error.length() <= 1000 ? error : error.substring(0, 1000);
+        for (AuditEvent event : batch.events()) {
+            jdbcTemplate.update(
+                    "INSERT INTO audit_spool_quarantine (spool_id, position, event, error, created_at) VALUES (?, ?, ?, ?, now())",
+                    spoolId, batch.startPosition(), event.toString(), reason);
+        }
+        saveCheckpoint(batch.endPosition());
+        quarantined.addAndGet(batch.events().size());
+        log.error("Quarantined {} audit spool record(s) at position {}: {}", batch.events().size(), batch.startPosition(), reason);
+    }
+
+    /**
+     * Moves the in-memory replay position after the checkpoint transaction committed
+     * and deletes segments that are fully replayed.
+     */
+    public void commit(ReplayBatch batch) {
+        lock.lock();
+        try {
+            readPosition = batch.endPosition();
+            replayed.addAndGet(batch.events().size());
+            deleteSegmentsBefore(readPosition / segmentBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes written pages to disk so spooled events survive an OS crash, not just a process crash.
+     * Only the segments written since the last sync are forced, and outside the lock: appends run
+     * on request threads when the queue overflows and must not wait for the disk.
+     */
+    @Scheduled(fixedDelayString = "${audit.spool.sync-interval-ms:1000}")
+    public void sync() {
+        List<Segment> written;
+        lock.lock();
+        try {
+            if (dirtySegments.isEmpty()) return;
+            written = new ArrayList<>(dirtySegments);
+            dirtySegments.clear();
+        } finally {
+            lock.unlock();
+        }
+        // A segment deleted meanwhile keeps its mapping, so forcing it is harmless
+        for (Segment segment : written) {
+            try {
+                segment.buffer.force();
+            } catch (UncheckedIOException e) {
+                log.warn("Could not sync audit spool segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            sync();
+            for (Segment segment : segments.values()) {
+                closeQuietly(segment);
+            }
+            segments.clear();
+            open = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The configured spool id, or the one stored in the spool directory, created on first use.
+     * Keeping it next to the segments ties the checkpoint to the data rather than to the host name.
+     */
+    private String resolveSpoolId(Path dir) throws IOException {
+        if (spoolId != null && !spoolId.isBlank()) return spoolId.trim();
+        Path file = dir.resolve(SPOOL_ID_FILE);
+        if (Files.exists(file)) {
+            String stored = Files.readString(file, StandardCharsets.UTF_8).trim();
+            if (!stored.isEmpty()) return stored;
+        }
+        String generated = UUID.randomUUID().toString();
+        Files.writeString(file, generated, StandardCharsets.UTF_8);
+        log.info("Created audit spool id {} in {}", generated, dir);
+        return generated;
+    }
+
+    private boolean appendRecord(byte[] payload) throws IOException {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (recordBytes + 4 > segmentBytes) {
+            log.error("Audit event of {} bytes does not fit a spool segment", payload.length);
+            return false;
+        }
+        int offset = (int) (writePosition % segmentBytes);
+        if (offset + recordBytes + 4 > segmentBytes) {
+            // Not enough room: mark the rest of this segment as unused and start the next one
+            Segment current = segments.get(writePosition / segmentBytes);
+            if (current != null && offset + 4 <= segmentBytes) {
+                current.buffer.putInt(offset, SEGMENT_END);
+                dirtySegments.add(current);
+            }
+            writePosition = nextSegmentStart(writePosition);
+            offset = 0;
+        }
+        long index = writePosition / segmentBytes;
+        Segment segment = segments.get(index);
+        if (segment == null) {
+            if (segments.size() >= maxSegments) {
+                log.error("Audit spool is full ({} segments of {} bytes)", maxSegments, segmentBytes);
+                return false;
+            }
+            segment = map(Paths.get(spoolDir, segmentName(index)));
+            segments.put(index, segment);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        // Payload and checksum first, length last: a reader never sees a length without its data
+        segment.buffer.put(offset + HEADER_BYTES, payload);
+        segment.buffer.putInt(offset + 4, (int) crc.getValue());
+        segment.buffer.putInt(offset, payload.length);
+        dirtySegments.add(segment);
+        writePosition += recordBytes;
+        return true;
+    }
+
+    /**
+     * Walks records from {@code position} and returns the offset after the last intact one.
+     * A torn or corrupt tail is zeroed so new records can be appended in its place.
+     */
+    private long scanForEnd(long position) {
+        while (true) {
+            Segment segment = segments.get(position / segmentBytes);
+            if (segment == null) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(position / segmentBytes);
+                if (next == null) return position;
+                position = next.getKey() * segmentBytes;
+                continue;
+            }
+            int offset = (int) (position % segmentBytes);
+            if (offset + HEADER_BYTES > segmentBytes) {
+                position = nextSegmentStart(position);
+                continue;
+            }
+            int length = segment.buffer.getInt(offset);
+            if (length == SEGMENT_END) {
+                position = nextSegmentStart(position);
+                continue;
+            }
+            if (length == 0) {
+                return position;
+            }
+            if (length < 0 || offset + HEADER_BYTES + length > segmentBytes || !checksumMatches(segment, offset, length)) {
+                corruptRecords.incrementAndGet();
+                log.warn("Truncating audit spool at torn record (position {})", position);
+                for (int i = offset; i < segmentBytes; i++) {
+                    segment.buffer.put(i, (byte) 0);
+                }
+                dirtySegments.add(segment);
+                dropSegmentsAfter(position / segmentBytes);
+                return position;
+            }
+            position += HEADER_BYTES + length;
+        }
+    }
+
+    private boolean checksumMatches(Segment segment, int offset, int length) {
+        byte[] payload = new byte[length];
+        segment.buffer.get(offset + HEADER_BYTES, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == segment.buffer.getInt(offset + 4);
+    }
+
+    private long nextSegmentStart(long position) {
+        return (position / segmentBytes + 1) * segmentBytes;
+    }
+
+    private void deleteSegmentsBefore(long index) {
+        Iterator<Map.Entry<Long, Segment>> it = segments.headMap(index, false).entrySet().iterator();
+        while (it.hasNext()) {
+            Segment segment = it.next().getValue();
+            it.remove();
+            closeQuietly(segment);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Could not delete replayed spool segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    private void dropSegmentsAfter(long index) {
+        for (Long later : new ArrayList<>(segments.tailMap(index, false).keySet())) {
+            Segment segment = segments.remove(later);
+            closeQuietly(segment);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Could not delete spool segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    private Segment map(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        return new Segment(file, channel, buffer);
+    }
+
+    private void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.debug("Error closing spool segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private static String segmentName(long index) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    private static Long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) return null;
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(AuditEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, event.cognitoSub());
+            writeString(out, event.email());
+            writeString(out, event.eventType());
+            writeString(out, event.ipAddress());
+            writeString(out, event.userAgent());
+            out.writeBoolean(event.success());
+            writeString(out, event.failureReason());
+            writeString(out, event.createdAt().toString());
+            out.writeInt(event.repeatCount());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static AuditEvent decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return new AuditEvent(
+                    readString(in), readString(in), readString(in), readString(in), readString(in),
+                    in.readBoolean(), readString(in), LocalDateTime.parse(readString(in)), in.readInt());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String metricsName() {
+        return "auditSpool";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            metrics.put("segments", segments.size());
+            metrics.put("backlogBytes", writePosition - readPosition);
+        } finally {
+            lock.unlock();
+        }
+        metrics.put("appended", appended.get());
+        metrics.put("replayed", replayed.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("corruptRecords", corruptRecords.get());
+        metrics.put("quarantined", quarantined.get());
+        return metrics;
+    }
+}
@@ -4,27 +4,58 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderAsyncClient;
 import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminAddUserToGroupRequest;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminRemoveUserFromGroupRequest;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserSettingsRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AttributeType;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.CognitoIdentityProviderException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersInGroupRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersInGroupResponse;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.MFAOptionType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UserNotFoundException;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
 
 import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CognitoAdminService {
 
+    // Largest page ListUsers and ListUsersInGroup accept
+    private static final int PAGE_SIZE = 60;
+
+    private static final Pattern UUID_PATTERN =
+            Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    private final SdkHttpClient cognitoHttpClient;
+    private final SdkAsyncHttpClient cognitoAsyncHttpClient;
+    private final CognitoUsernameStore cognitoUsernameStore;
+    private final CognitoCallGuard cognitoCallGuard;
+
     @Value("${cognito.user-pool-id}")
     private String userPoolId;
 
@@ -37,151 +68,286 @@ public class CognitoAdminService {
     @Value("${AWS_SECRET_ACCESS_KEY:}")
     private String awsSecretAccessKey;
 
+    @Value("${cognito.api-call-attempt-timeout-ms:5000}")
+    private long apiCallAttemptTimeoutMs;
+
+    @Value("${cognito.api-call-timeout-ms:10000}")
+    private long apiCallTimeoutMs;
+
     private CognitoIdentityProviderClient cognitoClient;
+    private CognitoIdentityProviderAsyncClient cognitoAsyncClient;
+
+    /**
+     * Result of one group change from {@link #applyGroupChangesAsync}. A permanent failure is one
+     * a retry cannot fix: the group does not exist, or Cognito has no such user under a freshly
+     * resolved name.
+     */
+    public record GroupOutcome(String groupName, GroupSyncOutbox.Operation operation, boolean success,
+                               String error, boolean permanent) {}
 
     @PostConstruct
     public void init() {
         Region region = Region.of(Objects.requireNonNull(awsRegion));
-        var builder = CognitoIdentityProviderClient.builder().region(region);
+        // Retries are left to CognitoCallGuard, which spaces them against the rate limits
+        ClientOverrideConfiguration overrides = ClientOverrideConfiguration.builder()
+                .retryPolicy(RetryPolicy.none())
+                .apiCallAttemptTimeout(Duration.ofMillis(apiCallAttemptTimeoutMs))
+                .apiCallTimeout(Duration.ofMillis(apiCallTimeoutMs))
+                .build();
+        var builder = CognitoIdentityProviderClient.builder()
+                .region(region)
+                .httpClient(cognitoHttpClient)
+                .overrideConfiguration(overrides);
+        var asyncBuilder = CognitoIdentityProviderAsyncClient.builder()
+                .region(region)
+                .httpClient(cognitoAsyncHttpClient)
+                .overrideConfiguration(overrides);
 
         // If AWS credentials are provided in properties, use static provider; otherwise fall back to default provider chain
         if (awsAccessKeyId != null && !awsAccessKeyId.isBlank() && awsSecretAccessKey != null && !awsSecretAccessKey.isBlank()) {
             AwsBasicCredentials creds = AwsBasicCredentials.create(awsAccessKeyId.trim(), awsSecretAccessKey.trim());
             builder.credentialsProvider(StaticCredentialsProvider.create(creds));
+            asyncBuilder.credentialsProvider(StaticCredentialsProvider.create(creds));
             log.info("Using static AWS credentials from properties for Cognito client");
         } else {
             log.info("No static AWS credentials found in properties, using default credentials provider chain");
         }
 
         this.cognitoClient = builder.build();
+        this.cognitoAsyncClient = asyncBuilder.build();
         log.info("Initialized CognitoIdentityProviderClient for region {} and pool {}", awsRegion, userPoolId);
     }
 
     /**
-     * Add a user (by username) to a Cognito group.
-     * Username should be the Cognito username (often email or username attribute).
+     * Add a user to a Cognito group. The identifier may be the Cognito username, sub or email.
+     * Throws if Cognito rejects the call, so the group sync dispatcher can retry it.
      */
     public void addUserToGroup(String username, String groupName) {
         if (username == null || groupName == null) return;
         try {
-            AdminAddUserToGroupRequest req = AdminAddUserToGroupRequest.builder()
-                    .userPoolId(userPoolId)
-                    .username(username)
-                    .groupName(groupName)
-                    .build();
-
-            cognitoClient.adminAddUserToGroup(req);
-            log.info("Added Cognito user {} to group {}", username, groupName);
-        } catch (CognitoIdentityProviderException e) {
-            String awsMsg = e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
-            log.warn("Initial attempt failed to add user {} to Cognito group {}: {}", username, groupName, awsMsg);
-
-            // If user not found, try resolving Cognito username by sub or email and retry once
-            try {
-                String resolved = resolveCognitoUsername(username);
-                if (resolved != null && !resolved.equals(username)) {
-                    AdminAddUserToGroupRequest req2 = AdminAddUserToGroupRequest.builder()
+            String resolved = withCognitoUsername(username, name -> cognitoCallGuard.call(
+                    CognitoCallGuard.Api.USER_UPDATE, "AdminAddUserToGroup",
+                    () -> cognitoClient.adminAddUserToGroup(AdminAddUserToGroupRequest.builder()
                             .userPoolId(userPoolId)
-                            .username(resolved)
+                            .username(name)
                             .groupName(groupName)
-                            .build();
-                    cognitoClient.adminAddUserToGroup(req2);
-                    log.info("Added Cognito user {} (resolved from {}) to group {}", resolved, username, groupName);
-                    return;
-                }
-            } catch (Exception ex) {
-                log.error("Retry lookup/add failed for user {} to group {}: {}", username, groupName, ex.getMessage());
-            }
-
+                            .build())));
+            log.info("Added Cognito user {} to group {}", resolved, groupName);
+        } catch (CognitoIdentityProviderException e) {
+            String awsMsg = awsMessage(e);
             log.error("Failed to add user {} to Cognito group {}: {}", username, groupName, awsMsg);
+            throw new RuntimeException("Failed to add user to Cognito group " + groupName + ": " + awsMsg, e);
         } catch (Exception e) {
             log.error("Unexpected error adding user {} to group {}: {}", username, groupName, e.getMessage());
+            throw new RuntimeException("Failed to add user to Cognito group " + groupName + ": " + e.getMessage(), e);
         }
     }
 
     /**
-     * Remove a user (by username) from a Cognito group.
+     * Remove a user from a Cognito group. The identifier may be the Cognito username, sub or email.
+     * Throws if Cognito rejects the call.
      */
     public void removeUserFromGroup(String username, String groupName) {
         if (username == null || groupName == null) return;
         try {
-            AdminRemoveUserFromGroupRequest req = AdminRemoveUserFromGroupRequest.builder()
-                    .userPoolId(userPoolId)
-                    .username(username)
-                    .groupName(groupName)
-                    .build();
-
-            cognitoClient.adminRemoveUserFromGroup(req);
-            log.info("Removed Cognito user {} from group {}", username, groupName);
-        } catch (CognitoIdentityProviderException e) {
-            String awsMsg = e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
-            log.warn("Initial attempt failed to remove user {} from Cognito group {}: {}", username, groupName, awsMsg);
-
-            // Try to resolve username and retry once
-            try {
-                String resolved = resolveCognitoUsername(username);
-                if (resolved != null && !resolved.equals(username)) {
-                    AdminRemoveUserFromGroupRequest req2 = AdminRemoveUserFromGroupRequest.builder()
+            String resolved = withCognitoUsername(username, name -> cognitoCallGuard.call(
+                    CognitoCallGuard.Api.USER_UPDATE, "AdminRemoveUserFromGroup",
+                    () -> cognitoClient.adminRemoveUserFromGroup(AdminRemoveUserFromGroupRequest.builder()
                             .userPoolId(userPoolId)
-                            .username(resolved)
+                            .username(name)
                             .groupName(groupName)
-                            .build();
-                    cognitoClient.adminRemoveUserFromGroup(req2);
-                    log.info("Removed Cognito user {} (resolved from {}) from group {}", resolved, username, groupName);
-                    return;
-                }
-            } catch (Exception ex) {
-                log.error("Retry lookup/remove failed for user {} from group {}: {}", username, groupName, ex.getMessage());
-            }
-
+                            .build())));
+            log.info("Removed Cognito user {} from group {}", resolved, groupName);
+        } catch (CognitoIdentityProviderException e) {
+            String awsMsg = awsMessage(e);
             log.error("Failed to remove user {} from Cognito group {}: {}", username, groupName, awsMsg);
+            throw new RuntimeException("Failed to remove user from Cognito group " + groupName + ": " + awsMsg, e);
         } catch (Exception e) {
             log.error("Unexpected error removing user {} from group {}: {}", username, groupName, e.getMessage());
+            throw new RuntimeException("Failed to remove user from Cognito group " + groupName + ": " + e.getMessage(), e);
         }
     }
 
     /**
-     * Resolve a Cognito username by trying the identifier as a sub or email.
-     * Returns the Cognito Username if found, otherwise null.
+     * Applies one user's group changes concurrently on the async client and completes once
+     * all of them have finished. The username is resolved once for the whole set. The future
+     * never fails: each group's result, success or error, is reported in its outcome.
      */
+    public CompletableFuture<List<GroupOutcome>> applyGroupChangesAsync(String identifier,
+                                                                        Map<String, GroupSyncOutbox.Operation> changes) {
+        if (identifier == null || changes.isEmpty()) return CompletableFuture.completedFuture(List.of());
+        Optional<String> known;
+        String username;
+        try {
+            known = cognitoUsernameStore.find(identifier);
+            username = known.orElseGet(() -> resolveCognitoUsername(identifier));
+        } catch (Exception e) {
+            List<GroupOutcome> failed = new ArrayList<>();
+            changes.forEach((group, op) -> failed.add(new GroupOutcome(group, op, false,
+                    "Could not resolve Cognito username: " + e.getMessage(), false)));
+            return CompletableFuture.completedFuture(failed);
+        }
+
+        AtomicBoolean userNotFound = new AtomicBoolean();
+        List<CompletableFuture<GroupOutcome>> outcomes = new ArrayList<>(changes.size());
+        changes.forEach((group, op) -> outcomes.add(groupCallAsync(username, group, op).handle((response, error) -> {
+            if (error == null) {
+                log.info("{} Cognito user {} {} group {}", op == GroupSyncOutbox.Operation.ADD ? "Added" : "Removed",
+                        username, op == GroupSyncOutbox.Operation.ADD ? "to" : "from", group);
+                return new GroupOutcome(group, op, true, null, false);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof UserNotFoundException) userNotFound.set(true);
+            // A stored username may just be stale and is looked up again on the retry
+            boolean permanent = cause instanceof ResourceNotFoundException
+                    || (cause instanceof UserNotFoundException && known.isEmpty());
+            String message = cause instanceof CognitoIdentityProviderException e ? awsMessage(e) : cause.getMessage();
+            log.error("Failed to {} user {} {} Cognito group {}: {}", op == GroupSyncOutbox.Operation.ADD ? "add" : "remove",
+                    username, op == GroupSyncOutbox.Operation.ADD ? "to" : "from", group, message);
+            return new GroupOutcome(group, op, false, message, permanent);
+        })));
+
+        return CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[0]))
+                .thenApply(done -> {
+                    if (userNotFound.get() && known.isPresent()) {
+                        // Looked up again on the retry
+                        cognitoUsernameStore.forget(identifier);
+                    }
+                    return outcomes.stream().map(CompletableFuture::join).toList();
+                });
+    }
+
+    private CompletableFuture<?> groupCallAsync(String username, String groupName, GroupSyncOutbox.Operation operation) {
+        if (operation == GroupSyncOutbox.Operation.ADD) {
+            return cognitoCallGuard.callAsync(CognitoCallGuard.Api.USER_UPDATE, "AdminAddUserToGroup",
+                    () -> cognitoAsyncClient.adminAddUserToGroup(AdminAddUserToGroupRequest.builder()
+                            .userPoolId(userPoolId)
+                            .username(username)
+                            .groupName(groupName)
+                            .build()));
+        }
+        return cognitoCallGuard.callAsync(CognitoCallGuard.Api.USER_UPDATE, "AdminRemoveUserFromGroup",
+                () -> cognitoAsyncClient.adminRemoveUserFromGroup(AdminRemoveUserFromGroupRequest.builder()
+                        .userPoolId(userPoolId)
+                        .username(username)
+                        .groupName(groupName)
+                        .build()));
+    }
+
+    // Unknown to the store: one ListUsers, remembered when found; otherwise the identifier itself
     private String resolveCognitoUsername(String identifier) {
-        if (identifier == null) return null;
+        String resolved = lookupCognitoUsername(identifier);
+        if (resolved == null) return identifier;
+        cognitoUsernameStore.remember(identifier, resolved);
+        return resolved;
+    }
 
-        // Try as sub
-        try {
-            ListUsersRequest req = ListUsersRequest.builder()
-                    .userPoolId(userPoolId)
-                    .filter("sub = \"" + identifier + "\"")
-                    .limit(1)
-                    .build();
-            ListUsersResponse resp = cognitoClient.listUsers(req);
-            if (resp.users() != null && !resp.users().isEmpty()) {
-                UserType u = resp.users().get(0);
-                return u.username();
+    /**
+     * Runs an admin call with the Cognito username for {@code identifier} and returns the name used.
+     * A known username (cache or {@code app_users}) costs just the call itself; an unknown one adds
+     * a single {@code ListUsers}. A stored username Cognito no longer knows is dropped and looked
+     * up again once.
+     */
+    private String withCognitoUsername(String identifier, Consumer<String> call) {
+        Optional<String> known = cognitoUsernameStore.find(identifier);
+        if (known.isPresent()) {
+            try {
+                call.accept(known.get());
+                return known.get();
+            } catch (UserNotFoundException e) {
+                log.warn("Stored Cognito username {} for {} is stale, looking it up again", known.get(), identifier);
+                cognitoUsernameStore.forget(identifier);
             }
-        } catch (Exception e) {
-            log.debug("ListUsers by sub failed for {}: {}", identifier, e.getMessage());
         }
+        String resolved = resolveCognitoUsername(identifier);
+        call.accept(resolved);
+        return resolved;
+    }
 
-        // Try as email
+    /**
+     * One {@code ListUsers} call: by email when the identifier looks like one, by sub when it is
+     * a UUID. Anything else is taken to be the username already. Returns null when not found.
+     */
+    private String lookupCognitoUsername(String identifier) {
+        String attribute;
+        if (identifier.contains("@")) {
+            attribute = "email";
+        } else if (UUID_PATTERN.matcher(identifier).matches()) {
+            attribute = "sub";
+        } else {
+            return null;
+        }
         try {
-            ListUsersRequest req = ListUsersRequest.builder()
-                    .userPoolId(userPoolId)
-                    .filter("email = \"" + identifier + "\"")
-                    .limit(1)
-                    .build();
-            ListUsersResponse resp = cognitoClient.listUsers(req);
+            ListUsersResponse resp = cognitoCallGuard.call(CognitoCallGuard.Api.USER_READ, "ListUsers",
+                    () -> cognitoClient.listUsers(ListUsersRequest.builder()
+                            .userPoolId(userPoolId)
+                            .filter(attribute + " = \"" + identifier.replace("\"", "") + "\"")
+                            .limit(1)
+                            .build()));
             if (resp.users() != null && !resp.users().isEmpty()) {
                 UserType u = resp.users().get(0);
                 return u.username();
             }
         } catch (Exception e) {
-            log.debug("ListUsers by email failed for {}: {}", identifier, e.getMessage());
+            log.debug("ListUsers by {} failed for {}: {}", attribute, identifier, e.getMessage());
         }
-
         return null;
     }
 
+    private static String awsMessage(CognitoIdentityProviderException e) {
+        return e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
+    }
+
+    /**
+     * Pages through the members of a group, one guarded {@code ListUsersInGroup} call per page.
+     */
+    public void forEachUserInGroup(String groupName, Consumer<UserType> consumer) {
+        String nextToken = null;
+        do {
+            String token = nextToken;
+            ListUsersInGroupResponse page = cognitoCallGuard.call(CognitoCallGuard.Api.USER_READ, "ListUsersInGroup",
+                    () -> cognitoClient.listUsersInGroup(ListUsersInGroupRequest.builder()
+                            .userPoolId(userPoolId)
+                            .groupName(groupName)
+                            .limit(PAGE_SIZE)
+                            .nextToken(token)
+                            .build()));
+            if (page.users() != null) page.users().forEach(consumer);
+            nextToken = page.nextToken();
+        } while (nextToken != null);
+    }
+
+    /**
+     * Pages through every user in the pool, returning only the {@code sub} attribute.
+     */
+    public void forEachUser(Consumer<UserType> consumer) {
+        String paginationToken = null;
+        do {
+            String token = paginationToken;
+            ListUsersResponse page = cognitoCallGuard.call(CognitoCallGuard.Api.USER_READ, "ListUsers",
+                    () -> cognitoClient.listUsers(ListUsersRequest.builder()
+                            .userPoolId(userPoolId)
+                            .attributesToGet("sub")
+                            .limit(PAGE_SIZE)
+                            .paginationToken(token)
+                            .build()));
+            if (page.users() != null) page.users().forEach(consumer);
+            paginationToken = page.paginationToken();
+        } while (paginationToken != null);
+    }
+
+    /**
+     * Value of a user attribute from a {@code ListUsers}/{@code ListUsersInGroup} result, or null.
+     */
+    public static String attribute(UserType user, String name) {
+        if (user.attributes() == null) return null;
+        return user.attributes().stream()
+                .filter(a -> name.equals(a.name()))
+                .map(AttributeType::value)
+                .findFirst()
+                .orElse(null);
+    }
+
     /**
      * Enable or disable MFA (SMS) for a user in Cognito.
      * @param username Cognito username or identifier
@@ -189,40 +355,25 @@ public class CognitoAdminService {
      */
     public void setUserMfaPreference(String username, boolean enabled) {
         if (username == null) return;
-        
-        try {
-            String resolvedUsername = resolveCognitoUsername(username);
-            if (resolvedUsername == null) {
-                resolvedUsername = username;
-            }
 
-            if (enabled) {
-                // Enable SMS MFA
-                MFAOptionType mfaOption = MFAOptionType.builder()
-                        .deliveryMedium("SMS")
-                        .attributeName("phone_number")
-                        .build();
-
-                AdminSetUserSettingsRequest req = AdminSetUserSettingsRequest.builder()
-                        .userPoolId(userPoolId)
-                        .username(resolvedUsername)
-                        .mfaOptions(mfaOption)
-                        .build();
-
-                cognitoClient.adminSetUserSettings(req);
-                log.info("MFA enabled for Cognito user {}", resolvedUsername);
-            } else {
-                // Disable MFA by setting empty options
-                AdminSetUserSettingsRequest req = AdminSetUserSettingsRequest.builder()
+        try {
+            String resolvedUsername = withCognitoUsername(username, name -> {
+                AdminSetUserSettingsRequest.Builder req = AdminSetUserSettingsRequest.builder()
                         .userPoolId(userPoolId)
-                        .username(resolvedUsername)
-                        .build();
-
-                cognitoClient.adminSetUserSettings(req);
-                log.info("MFA disabled for Cognito user {}", resolvedUsername);
-            }
+                        .username(name);
+                if (enabled) {
+                    // Enable SMS MFA; disabling sends empty options
+                    req.mfaOptions(MFAOptionType.builder()
+                            .deliveryMedium("SMS")
+                            .attributeName("phone_number")
+                            .build());
+                }
+                cognitoCallGuard.call(CognitoCallGuard.Api.USER_UPDATE, "AdminSetUserSettings",
+                        () -> cognitoClient.adminSetUserSettings(req.build()));
+            });
+            log.info("MFA {} for Cognito user {}", enabled ? "enabled" : "disabled", resolvedUsername);
         } catch (CognitoIdentityProviderException e) {
-            String awsMsg = e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
+            String awsMsg = awsMessage(e);
             log.error("Failed to set MFA preference for user {}: {}", username, awsMsg);
             throw new RuntimeException("Failed to update MFA preference in Cognito: " + awsMsg);
         } catch (Exception e) {
@@ -0,0 +1,477 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.utils.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Client-side protection for Cognito admin calls. Every call passes, in order:
+ * <ul>
+ *   <li>a circuit breaker that fails fast after repeated throttling or server errors;</li>
+ *   <li>a concurrency limit per API family (bulkhead), so one bulk action cannot take every connection;</li>
+ *   <li>a token bucket per API family, sized below Cognito's per-category request quota;</li>
+ *   <li>retries with full jitter on throttling and 5xx responses (the SDK's own retries are off).</li>
+ * </ul>
+ * A call that cannot get a permit or token within the wait limit is rejected with
+ * {@link CognitoCallRejectedException} rather than queueing indefinitely.
+ */
+@Slf4j
+@Component
+public class CognitoCallGuard implements MetricsSource {
+
+    /**
+     * Cognito quota categories: reads (ListUsers, AdminGetUser) and user updates (group
+     * membership, user settings) are limited separately.
+     */
+    public enum Api { USER_READ, USER_UPDATE }
+
+    public static class CognitoCallRejectedException extends RuntimeException {
+        public CognitoCallRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private final Map<Api, TokenBucket> buckets = new EnumMap<>(Api.class);
+    private final Map<Api, Bulkhead> bulkheads = new EnumMap<>(Api.class);
+    private final ConcurrentHashMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    private final long maxWaitMs;
+    private final int maxRetries;
+    private final long retryBaseMs;
+    private final long retryMaxMs;
+    private final int breakerFailureThreshold;
+    private final long breakerOpenMs;
+
+    // Circuit breaker state; guarded by breakerLock
+    private final ReentrantLock breakerLock = new ReentrantLock();
+    private int consecutiveFailures;
+    private long openUntilNanos;
+    private boolean probeInFlight;
+
+    private final LongAdder throttles = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final AtomicLong breakerOpened = new AtomicLong();
+
+    public CognitoCallGuard(@Value("${cognito.guard.read-rps:100}") double readRps,
+                            @Value("${cognito.guard.update-rps:20}") double updateRps,
+                            @Value("${cognito.guard.read-concurrency:10}") int readConcurrency,
+                            @Value("${cognito.guard.update-concurrency:5}") int updateConcurrency,
+                            @Value("${cognito.guard.max-wait-ms:2000}") long maxWaitMs,
+                            @Value("${cognito.guard.max-retries:3}") int maxRetries,
+                            @Value("${cognito.guard.retry-base-ms:100}") long retryBaseMs,
+                            @Value("${cognito.guard.retry-max-ms:2000}") long retryMaxMs,
+                            @Value("${cognito.guard.breaker-failure-threshold:10}") int breakerFailureThreshold,
+                            @Value("${cognito.guard.breaker-open-ms:30000}") long breakerOpenMs) {
+        buckets.put(Api.USER_READ, new TokenBucket(readRps));
+        buckets.put(Api.USER_UPDATE, new TokenBucket(updateRps));
+        bulkheads.put(Api.USER_READ, new Bulkhead(readConcurrency));
+        bulkheads.put(Api.USER_UPDATE, new Bulkhead(updateConcurrency));
+        this.maxWaitMs = maxWaitMs;
+        this.maxRetries = maxRetries;
+        this.retryBaseMs = retryBaseMs;
+        this.retryMaxMs = retryMaxMs;
+        this.breakerFailureThreshold = breakerFailureThreshold;
+        this.breakerOpenMs = breakerOpenMs;
+    }
+
+    /**
+     * Runs one Cognito call under the guard. Service exceptions other than throttling and 5xx
+     * (user not found, invalid parameter) are rethrown unchanged on the first attempt.
+     */
+    public <T> T call(Api api, String operation, Supplier<T> call) {
+        Boolean probe = admitThroughBreaker();
+        if (probe == null) {
+            shortCircuited.increment();
+            throw new CognitoCallRejectedException("Cognito circuit open, " + operation + " not attempted");
+        }
+        Bulkhead bulkhead = bulkheads.get(api);
+        boolean permitted;
+        try {
+            permitted = bulkhead.permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (probe) releaseProbe();
+            throw new CognitoCallRejectedException("Interrupted waiting for a Cognito " + api + " slot");
+        }
+        if (!permitted) {
+            rejected.increment();
+            if (probe) releaseProbe();
+            throw new CognitoCallRejectedException("Too many concurrent Cognito " + api + " calls, " + operation + " rejected");
+        }
+        OperationStats stats = operations.computeIfAbsent(operation, o -> new OperationStats());
+        try {
+            for (int attempt = 0; ; attempt++) {
+                takeToken(api, operation);
+                long started = System.nanoTime();
+                try {
+                    T result = call.get();
+                    stats.record(System.nanoTime() - started, false);
+                    onSuccess();
+                    return result;
+                } catch (SdkServiceException e) {
+                    stats.record(System.nanoTime() - started, true);
+                    boolean throttled = e.isThrottlingException();
+                    if (throttled) throttles.increment();
+                    if (!throttled && e.statusCode() < 500) {
+                        onSuccess(); // Cognito answered; a client error says nothing about its health
+                        throw e;
+                    }
+                    onFailure();
+                    if (attempt >= maxRetries) throw e;
+                    backoff(attempt, operation, e);
+                } catch (SdkClientException e) {
+                    stats.record(System.nanoTime() - started, true);
+                    onFailure();
+                    if (attempt >= maxRetries) throw e;
+                    backoff(attempt, operation, e);
+                }
+            }
+        } finally {
+            bulkhead.release();
+            if (probe) releaseProbe();
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #call} for the async SDK client. The breaker is checked up
+     * front; a call that finds the concurrency limit full is queued and launched by the release
+     * of a slot, or rejected after {@code max-wait-ms}. Token waits and retry backoff are
+     * scheduled on a timer, so the calling thread never waits. The slot is held until the
+     * returned future completes.
+     */
+    public <T> CompletableFuture<T> callAsync(Api api, String operation, Supplier<CompletableFuture<T>> call) {
+        Boolean probe = admitThroughBreaker();
+        if (probe == null) {
+            shortCircuited.increment();
+            return CompletableFuture.failedFuture(
+                    new CognitoCallRejectedException("Cognito circuit open, " + operation + " not attempted"));
+        }
+        Bulkhead bulkhead = bulkheads.get(api);
+        OperationStats stats = operations.computeIfAbsent(operation, o -> new OperationStats());
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<Void> permit = bulkhead.acquireAsync(maxWaitMs);
+        // A queued call is launched off the releasing thread, so a call that fails at once and
+        // releases its slot does not recurse into the next launch
+        BiConsumer<Void, Throwable> launch = (granted, timeout) -> {
+            if (timeout != null) {
+                rejected.increment();
+                if (probe) releaseProbe();
+                result.completeExceptionally(new CognitoCallRejectedException(
+                        "Too many concurrent Cognito " + api + " calls, " + operation + " rejected"));
+                return;
+            }
+            CompletableFuture<T> attempts = new CompletableFuture<>();
+            attempts.whenComplete((value, error) -> {
+                bulkhead.release();
+                if (probe) releaseProbe();
+                if (error == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(error);
+                }
+            });
+            attemptAsync(api, operation, call, stats, 0, attempts);
+        };
+        if (permit.isDone()) {
+            permit.whenComplete(launch);
+        } else {
+            permit.whenCompleteAsync(launch);
+        }
+        return result;
+    }
+
+    private <T> void attemptAsync(Api api, String operation, Supplier<CompletableFuture<T>> call,
+                                  OperationStats stats, int attempt, CompletableFuture<T> result) {
+        long waitNanos = buckets.get(api).reserve(TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+        if (waitNanos < 0) {
+            rejected.increment();
+            result.completeExceptionally(
+                    new CognitoCallRejectedException("Cognito " + api + " rate limit reached, " + operation + " rejected"));
+            return;
+        }
+        Executor start = waitNanos == 0 ? Runnable::run : CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS);
+        start.execute(() -> {
+            long started = System.nanoTime();
+            CompletableFuture<T> pending;
+            try {
+                pending = call.get();
+            } catch (RuntimeException e) {
+                pending = CompletableFuture.failedFuture(e);
+            }
+            pending.whenComplete((value, error) -> {
+                long elapsed = System.nanoTime() - started;
+                if (error == null) {
+                    stats.record(elapsed, false);
+                    onSuccess();
+                    result.complete(value);
+                    return;
+                }
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                stats.record(elapsed, true);
+                boolean retryable;
+                if (cause instanceof SdkServiceException e) {
+                    boolean throttled = e.isThrottlingException();
+                    if (throttled) throttles.increment();
+                    retryable = throttled || e.statusCode() >= 500;
+                    if (!retryable) onSuccess();
+                } else {
+                    retryable = cause instanceof SdkClientException;
+                }
+                if (!retryable) {
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                onFailure();
+                if (attempt >= maxRetries) {
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                retries.increment();
+                long delay = backoffMillis(attempt);
+                log.debug("Retrying Cognito {} in {} ms after: {}", operation, delay, cause.getMessage());
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                        .execute(() -> attemptAsync(api, operation, call, stats, attempt + 1, result));
+            });
+        });
+    }
+
+    private void takeToken(Api api, String operation) {
+        long waitNanos = buckets.get(api).reserve(TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+        if (waitNanos < 0) {
+            rejected.increment();
+            throw new CognitoCallRejectedException("Cognito " + api + " rate limit reached, " + operation + " rejected");
+        }
+        sleepNanos(waitNanos);
+    }
+
+    private void backoff(int attempt, String operation, Exception cause) {
+        retries.increment();
+        long delay = backoffMillis(attempt);
+        log.debug("Retrying Cognito {} in {} ms after: {}", operation, delay, cause.getMessage());
+        sleepNanos(TimeUnit.MILLISECONDS.toNanos(delay));
+    }
+
+    // Full jitter: uniform between 0 and the exponential cap
+    private long backoffMillis(int attempt) {
+        long cap = Math.min(retryMaxMs, retryBaseMs << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private static void sleepNanos(long nanos) {
+        if (nanos <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CognitoCallRejectedException("Interrupted while waiting to call Cognito");
+        }
+    }
+
+    // Closed: everything passes. Open: nothing until openUntil, then one probe call decides.
+    // Returns null when rejected, otherwise whether the caller is the probe.
+    private Boolean admitThroughBreaker() {
+        breakerLock.lock();
+        try {
+            if (openUntilNanos == 0) return false;
+            if (System.nanoTime() - openUntilNanos < 0 || probeInFlight) return null;
+            probeInFlight = true;
+            return true;
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    private void releaseProbe() {
+        breakerLock.lock();
+        try {
+            probeInFlight = false;
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    private void onSuccess() {
+        breakerLock.lock();
+        try {
+            if (openUntilNanos != 0) {
+                log.info("Cognito circuit closed");
+            }
+            consecutiveFailures = 0;
+            openUntilNanos = 0;
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    private void onFailure() {
+        breakerLock.lock();
+        try {
+            consecutiveFailures++;
+            boolean probeFailed = openUntilNanos != 0;
+            if (probeFailed || consecutiveFailures >= breakerFailureThreshold) {
+                openUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(breakerOpenMs);
+                if (openUntilNanos == 0) openUntilNanos = 1;
+                breakerOpened.incrementAndGet();
+                log.warn("Cognito circuit open for {} ms after {} consecutive failures", breakerOpenMs, consecutiveFailures);
+            }
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    /**
+     * Token bucket holding one second of burst. Callers reserve a token and sleep until it is
+     * theirs, so waiting happens outside the lock.
+     */
+    private static final class TokenBucket {
+        private final double permitsPerNano;
+        private final double capacity;
+        private final ReentrantLock lock = new ReentrantLock();
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double permitsPerSecond) {
+            this.permitsPerNano = permitsPerSecond / 1_000_000_000d;
+            this.capacity = Math.max(1, permitsPerSecond);
+            this.tokens = capacity;
+        }
+
+        /**
+         * Returns how long to wait for the reserved token, or -1 if that would exceed maxWaitNanos.
+         */
+        long reserve(long maxWaitNanos) {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                tokens = Math.min(capacity, tokens + (now - refilledAt) * permitsPerNano);
+                refilledAt = now;
+                long wait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+                if (wait > maxWaitNanos) return -1;
+                tokens -= 1; // may go negative: later callers queue behind this reservation
+                return wait;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Concurrency limit shared by blocking and async calls. Blocking callers wait on the
+     * semaphore; async callers that find it full queue a future, which a later {@link #release}
+     * completes with the freed permit.
+     */
+    private static final class Bulkhead {
+        final Semaphore permits;
+        private final ConcurrentLinkedQueue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+
+        Bulkhead(int limit) {
+            this.permits = new Semaphore(limit);
+        }
+
+        /**
+         * Completes holding a permit, or fails with a {@link TimeoutException} after maxWaitMs.
+         */
+        CompletableFuture<Void> acquireAsync(long maxWaitMs) {
+            if (waiters.isEmpty() && permits.tryAcquire()) return CompletableFuture.completedFuture(null);
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            CompletableFuture.delayedExecutor(maxWaitMs, TimeUnit.MILLISECONDS).execute(() -> {
+                if (waiter.completeExceptionally(new TimeoutException())) waiters.remove(waiter);
+            });
+            // A permit released before the waiter was queued would otherwise go unnoticed
+            handOver();
+            return waiter;
+        }
+
+        void release() {
+            permits.release();
+            handOver();
+        }
+
+        // Passes free permits to queued waiters; a permit taken for a waiter that already timed
+        // out goes back before the queue is checked again
+        private void handOver() {
+            while (!waiters.isEmpty() && permits.tryAcquire()) {
+                CompletableFuture<Void> waiter = waiters.poll();
+                if (waiter == null || !waiter.complete(null)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+
+    private static final class OperationStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos, boolean error) {
+            calls.increment();
+            if (error) errors.increment();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "cognitoCalls";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        breakerLock.lock();
+        try {
+            metrics.put("circuitOpen", openUntilNanos != 0);
+            metrics.put("consecutiveFailures", consecutiveFailures);
+        } finally {
+            breakerLock.unlock();
+        }
+        metrics.put("breakerOpened", breakerOpened.get());
+        metrics.put("throttles", throttles.sum());
+        metrics.put("retries", retries.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("shortCircuited", shortCircuited.sum());
+        Map<String, Integer> inUse = new LinkedHashMap<>();
+        bulkheads.forEach((api, b) -> inUse.put(api.name(), b.permits.availablePermits()));
+        metrics.put("availablePermits", inUse);
+
+        Map<String, Object> byOperation = new LinkedHashMap<>();
+        operations.forEach((name, stats) -> {
+            long calls = stats.calls.sum();
+            Map<String, Object> op = new LinkedHashMap<>();
+            op.put("calls", calls);
+            op.put("errors", stats.errors.sum());
+            op.put("avgMillis", calls == 0 ? 0.0 : stats.totalNanos.get() / 1_000_000.0 / calls);
+            op.put("maxMillis", stats.maxNanos.get() / 1_000_000.0);
+            byOperation.put(name, op);
+        });
+        metrics.put("operations", byOperation);
+        return metrics;
+    }
+}
@@ -0,0 +1,69 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.entity.AppUser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Which application roles are mirrored as Cognito groups, and under which group name.
+ */
+@Component
+public class CognitoGroupMapping {
+
+    private final Set<String> allowedGroups;
+    private final boolean syncGroups;
+
+    public CognitoGroupMapping(@Value("${cognito.allowed-groups:}") String allowedGroupsCsv,
+                               @Value("${cognito.sync-groups:true}") boolean syncGroups) {
+        this.allowedGroups = Arrays.stream((allowedGroupsCsv == null ? "" : allowedGroupsCsv).split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.syncGroups = syncGroups;
+    }
+
+    public Set<String> allowedGroups() {
+        return allowedGroups;
+    }
+
+    /**
+     * True when changes to this role should be pushed to Cognito.
+     */
+    public boolean isSynced(String roleName) {
+        return syncGroups && allowedGroups.contains(roleName);
+    }
+
+    /**
+     * Map application role names to Cognito group names.
+     * Per request, ML1/ML2/ML3 (and HR) should also map to the ADMIN Cognito group.
+     */
+    public String toCognitoGroup(String roleName) {
+        if (roleName == null) return null;
+        // Per product decision: map ML-level roles and HR to the ADMIN Cognito group
+        // so that management/HR roles receive the ADMIN group in Cognito.
+        if (roleName.equalsIgnoreCase("HR")) return "ADMIN";
+        if (roleName.toUpperCase(Locale.ROOT).startsWith("ML")) return "ADMIN";
+        // Default: map role name directly to Cognito group
+        return roleName;
+    }
+
+    /**
+     * Identifier passed to Cognito admin calls: the stored Cognito username when known,
+     * otherwise the sub, then the app username, then email.
+     */
+    public static String cognitoUsername(AppUser user) {
+        if (user.getCognitoUsername() != null) return user.getCognitoUsername();
+        return cognitoUsername(user.getCognitoSub(), user.getUsername(), user.getEmail());
+    }
+
+    public static String cognitoUsername(String cognitoSub, String username, String email) {
+        if (cognitoSub != null && !cognitoSub.isBlank()) return cognitoSub;
+        if (username != null && !username.isBlank()) return username;
+        return email;
+    }
+}
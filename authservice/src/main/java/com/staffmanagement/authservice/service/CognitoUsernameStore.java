@@ -0,0 +1,91 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.utils.LocalCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Known Cognito usernames, keyed by the sub or email callers have at hand. Lookups go to the
+ * in-memory cache, then to {@code app_users.cognito_username}; Cognito itself is only asked by
+ * {@link CognitoAdminService} when neither knows the user.
+ * <p>
+ * A pool's usernames never change, so entries only go stale when a user is deleted and
+ * recreated, which surfaces as a user-not-found from Cognito and a {@link #forget}.
+ */
+@Component
+@RequiredArgsConstructor
+public class CognitoUsernameStore {
+
+    // Keeps one statement well below the PostgreSQL bind parameter limit
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LocalCache<String, String> cognitoUsernameCache;
+
+    public Optional<String> find(String identifier) {
+        if (identifier == null) return Optional.empty();
+        String cached = cognitoUsernameCache.get(identifier);
+        if (cached != null) return Optional.of(cached);
+
+        List<String> stored = jdbcTemplate.queryForList(
+                "SELECT cognito_username FROM app_users " +
+                "WHERE (cognito_sub = ? OR email = ?) AND cognito_username IS NOT NULL LIMIT 1",
+                String.class, identifier, identifier);
+        if (stored.isEmpty()) return Optional.empty();
+        cognitoUsernameCache.put(identifier, stored.get(0));
+        return Optional.of(stored.get(0));
+    }
+
+    /**
+     * Records the username for the user matching {@code identifier} (sub or email). The row is
+     * only written when the stored value differs, so repeated calls cost a cache hit. The cache
+     * takes the value once the surrounding transaction commits.
+     */
+    public void remember(String identifier, String cognitoUsername) {
+        if (identifier == null || cognitoUsername == null) return;
+        if (cognitoUsername.equals(cognitoUsernameCache.get(identifier))) return;
+        jdbcTemplate.update("UPDATE app_users SET cognito_username = ? " +
+                        "WHERE (cognito_sub = ? OR email = ?) AND cognito_username IS DISTINCT FROM ?",
+                cognitoUsername, identifier, identifier, cognitoUsername);
+        cognitoUsernameCache.putAfterCommit(identifier, cognitoUsername);
+    }
+
+    /**
+     * Records usernames for many users at once, keyed by sub. One statement per chunk, and
+     * only rows whose stored username differs are written. Returns the number of rows changed.
+     */
+    public int rememberAll(Map<String, String> usernamesBySub) {
+        int changed = 0;
+        List<Map.Entry<String, String>> entries = new ArrayList<>(usernamesBySub.entrySet());
+        for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Map.Entry<String, String>> chunk = entries.subList(from, Math.min(entries.size(), from + MAX_ROWS_PER_STATEMENT));
+            Object[] args = new Object[chunk.size() * 2];
+            int i = 0;
+            for (Map.Entry<String, String> e : chunk) {
+                args[i++] = e.getKey();
+                args[i++] = e.getValue();
+            }
+            changed += jdbcTemplate.update("UPDATE app_users u SET cognito_username = v.username " +
+                    "FROM (VALUES " + String.join(", ", Collections.nCopies(chunk.size(), "(?, ?)")) +
+                    ") AS v(sub, username) " +
+                    "WHERE u.cognito_sub = v.sub AND u.cognito_username IS DISTINCT FROM v.username", args);
+        }
+        cognitoUsernameCache.putAllAfterCommit(usernamesBySub);
+        return changed;
+    }
+
+    public void forget(String identifier) {
+        if (identifier == null) return;
+        jdbcTemplate.update("UPDATE app_users SET cognito_username = NULL " +
+                "WHERE (cognito_sub = ? OR email = ?) AND cognito_username IS NOT NULL", identifier, identifier);
+        cognitoUsernameCache.invalidate(identifier);
+        cognitoUsernameCache.invalidateAfterCommit(identifier);
+    }
+}
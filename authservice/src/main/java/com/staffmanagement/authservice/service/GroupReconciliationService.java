@@ -0,0 +1,439 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pool-wide repair of Cognito group memberships against {@code user_roles}.
+ * <p>
+ * One pass pages through {@code ListUsers} (sub to username) and {@code ListUsersInGroup} for
+ * every group a synced role maps to, diffs those member sets against the database in memory,
+ * and applies only the differences: a pool already in sync costs the listing calls and
+ * nothing else. Changes go out per user in parallel chunks; any that fail are handed to the
+ * group sync outbox for retry. Users with outbox entries still pending are left alone, since
+ * those entries will bring them in line; this is checked again before each chunk, and a failed
+ * change is re-derived from the user's current roles before it is queued, so a retry never
+ * undoes a role change made while the pass ran. Cognito users without an {@code app_users} row
+ * are reported, never removed.
+ * <p>
+ * Passes run on the service's own thread and hold a PostgreSQL advisory lock, so only one
+ * instance reconciles at a time.
+ * <p>
+ * The database side is only written where it drifted: {@code app_users.cognito_username} is
+ * refreshed for rows whose stored username differs from the pool.
+ */
+@Slf4j
+@Service
+public class GroupReconciliationService implements MetricsSource {
+
+    public enum State { RUNNING, COMPLETED, FAILED }
+
+    // pg_advisory_lock key for a reconciliation pass, shared by every instance
+    private static final long ADVISORY_LOCK_KEY = 0x6772_6f75_7072_6563L;
+
+    public record ReconciliationStatus(String id,
+                                       String trigger,
+                                       boolean dryRun,
+                                       State state,
+                                       Instant startedAt,
+                                       Instant finishedAt,
+                                       long cognitoUsers,
+                                       long databaseUsers,
+                                       long usernamesUpdated,
+                                       long toAdd,
+                                       long toRemove,
+                                       long added,
+                                       long removed,
+                                       long failed,
+                                       long skippedPending,
+                                       long missingInCognito,
+                                       long unmatchedCognitoMembers,
+                                       String message) {}
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final String trigger;
+        final boolean dryRun;
+        final Instant startedAt = Instant.now();
+        volatile State state = State.RUNNING;
+        volatile Instant finishedAt;
+        volatile String message;
+        final AtomicLong cognitoUsers = new AtomicLong();
+        final AtomicLong databaseUsers = new AtomicLong();
+        final AtomicLong usernamesUpdated = new AtomicLong();
+        final AtomicLong toAdd = new AtomicLong();
+        final AtomicLong toRemove = new AtomicLong();
+        final AtomicLong added = new AtomicLong();
+        final AtomicLong removed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong skippedPending = new AtomicLong();
+        final AtomicLong missingInCognito = new AtomicLong();
+        final AtomicLong unmatchedCognitoMembers = new AtomicLong();
+
+        Job(String trigger, boolean dryRun) {
+            this.trigger = trigger;
+            this.dryRun = dryRun;
+        }
+
+        ReconciliationStatus status() {
+            return new ReconciliationStatus(id, trigger, dryRun, state, startedAt, finishedAt,
+                    cognitoUsers.get(), databaseUsers.get(), usernamesUpdated.get(), toAdd.get(), toRemove.get(),
+                    added.get(), removed.get(), failed.get(), skippedPending.get(), missingInCognito.get(),
+                    unmatchedCognitoMembers.get(), message);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CognitoAdminService cognitoAdminService;
+    private final CognitoGroupMapping cognitoGroupMapping;
+    private final CognitoUsernameStore cognitoUsernameStore;
+    private final GroupSyncOutbox groupSyncOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final boolean scheduledEnabled;
+    private final ExecutorService executor;
+
+    private final AtomicReference<Job> running = new AtomicReference<>();
+    private volatile Job lastJob;
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalChanges = new AtomicLong();
+
+    public GroupReconciliationService(JdbcTemplate jdbcTemplate,
+                                      CognitoAdminService cognitoAdminService,
+                                      CognitoGroupMapping cognitoGroupMapping,
+                                      CognitoUsernameStore cognitoUsernameStore,
+                                      GroupSyncOutbox groupSyncOutbox,
+                                      TransactionTemplate transactionTemplate,
+                                      @Value("${group-sync.reconcile.chunk-size:20}") int chunkSize,
+                                      @Value("${group-sync.reconcile.enabled:true}") boolean scheduledEnabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cognitoAdminService = cognitoAdminService;
+        this.cognitoGroupMapping = cognitoGroupMapping;
+        this.cognitoUsernameStore = cognitoUsernameStore;
+        this.groupSyncOutbox = groupSyncOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.scheduledEnabled = scheduledEnabled;
+        this.executor = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("group-reconcile").daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts a reconciliation in the background. With {@code dryRun} the differences are only
+     * counted. Throws {@link IllegalStateException} if one is already running.
+     */
+    public ReconciliationStatus start(boolean dryRun, String trigger) {
+        Job job = claim(dryRun, trigger);
+        if (job == null) {
+            throw new IllegalStateException("A group reconciliation is already running");
+        }
+        executor.submit(() -> run(job));
+        return job.status();
+    }
+
+    /**
+     * The running reconciliation, or the last finished one.
+     */
+    public Optional<ReconciliationStatus> status() {
+        Job current = running.get();
+        return Optional.ofNullable(current != null ? current : lastJob).map(Job::status);
+    }
+
+    @Scheduled(fixedDelayString = "${group-sync.reconcile.interval-ms:86400000}",
+            initialDelayString = "${group-sync.reconcile.interval-ms:86400000}")
+    public void scheduledReconcile() {
+        if (!scheduledEnabled) return;
+        Job job = claim(false, "scheduled");
+        if (job == null) {
+            log.info("Skipping scheduled group reconciliation, one is already running");
+            return;
+        }
+        // Off the shared scheduler thread, which other scheduled tasks need
+        executor.submit(() -> run(job));
+    }
+
+    private Job claim(boolean dryRun, String trigger) {
+        Job job = new Job(trigger, dryRun);
+        return running.compareAndSet(null, job) ? job : null;
+    }
+
+    private void run(Job job) {
+        try {
+            Boolean locked = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+                if (!advisoryLock(connection, "SELECT pg_try_advisory_lock(?)")) return false;
+                try {
+                    reconcile(job);
+                } finally {
+                    advisoryLock(connection, "SELECT pg_advisory_unlock(?)");
+                }
+                return true;
+            });
+            if (!Boolean.TRUE.equals(locked)) {
+                job.state = State.FAILED;
+                job.message = "A group reconciliation is running on another instance";
+                log.info("Group reconciliation {} ({}) skipped, another instance holds the lock", job.id, job.trigger);
+                return;
+            }
+            job.state = State.COMPLETED;
+            log.info("Group reconciliation {} ({}{}) finished: +{} -{} ({} failed, {} pending skipped, {} usernames refreshed)",
+                    job.id, job.trigger, job.dryRun ? ", dry run" : "", job.toAdd.get(), job.toRemove.get(),
+                    job.failed.get(), job.skippedPending.get(), job.usernamesUpdated.get());
+        } catch (Exception e) {
+            job.state = State.FAILED;
+            job.message = e.getMessage();
+            log.error("Group reconciliation {} failed: {}", job.id, e.getMessage(), e);
+        } finally {
+            job.finishedAt = Instant.now();
+            runs.incrementAndGet();
+            lastJob = job;
+            running.set(null);
+        }
+    }
+
+    // Session-level, taken on the connection held for the whole pass so the unlock uses the same one
+    private static boolean advisoryLock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, ADVISORY_LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void reconcile(Job job) {
+        // Cognito groups that synced roles map to; several roles can share one group
+        Set<String> groups = new LinkedHashSet<>();
+        for (String role : cognitoGroupMapping.allowedGroups()) {
+            if (cognitoGroupMapping.isSynced(role)) {
+                groups.add(cognitoGroupMapping.toCognitoGroup(role));
+            }
+        }
+        if (groups.isEmpty()) {
+            job.message = "No roles are synced to Cognito groups";
+            return;
+        }
+
+        // Pool: sub -> username for every user
+        Map<String, String> usernamesBySub = new HashMap<>();
+        cognitoAdminService.forEachUser(user -> {
+            String sub = CognitoAdminService.attribute(user, "sub");
+            if (sub != null) usernamesBySub.put(sub, user.username());
+        });
+        job.cognitoUsers.set(usernamesBySub.size());
+        Map<String, String> subsByUsername = new HashMap<>(usernamesBySub.size() * 2);
+        usernamesBySub.forEach((sub, username) -> subsByUsername.put(username, sub));
+        if (!job.dryRun) {
+            job.usernamesUpdated.set(cognitoUsernameStore.rememberAll(usernamesBySub));
+        }
+
+        // Actual memberships, as subs
+        Map<String, Set<String>> actual = new HashMap<>();
+        for (String group : groups) {
+            Set<String> members = new HashSet<>();
+            cognitoAdminService.forEachUserInGroup(group, user -> {
+                String sub = CognitoAdminService.attribute(user, "sub");
+                if (sub == null) sub = subsByUsername.get(user.username());
+                if (sub != null) members.add(sub);
+            });
+            actual.put(group, members);
+        }
+
+        // Desired memberships from user_roles
+        Map<String, Long> userIds = new HashMap<>();
+        Map<String, Set<String>> desired = new HashMap<>();
+        jdbcTemplate.query("SELECT u.id, u.cognito_sub, r.role_name FROM app_users u " +
+                        "LEFT JOIN user_roles ur ON ur.user_id = u.id " +
+                        "LEFT JOIN roles r ON r.id = ur.role_id AND r.role_name = ANY (?)",
+                rs -> {
+                    String sub = rs.getString("cognito_sub");
+                    userIds.put(sub, rs.getLong("id"));
+                    String role = rs.getString("role_name");
+                    if (role != null && cognitoGroupMapping.isSynced(role)) {
+                        desired.computeIfAbsent(cognitoGroupMapping.toCognitoGroup(role), g -> new HashSet<>()).add(sub);
+                    }
+                },
+                (Object) cognitoGroupMapping.allowedGroups().toArray(new String[0]));
+        job.databaseUsers.set(userIds.size());
+
+        Set<Long> pending = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT user_id FROM group_sync_outbox WHERE next_attempt_at IS NOT NULL AND user_id IS NOT NULL",
+                Long.class));
+
+        // Diff: per user, the groups to add and remove
+        Map<String, Map<String, GroupSyncOutbox.Operation>> changes = new LinkedHashMap<>();
+        Set<String> skipped = new HashSet<>();
+        for (String group : groups) {
+            Set<String> want = desired.getOrDefault(group, Set.of());
+            Set<String> have = actual.getOrDefault(group, Set.of());
+            for (String sub : want) {
+                if (have.contains(sub)) continue;
+                if (!usernamesBySub.containsKey(sub)) {
+                    job.missingInCognito.incrementAndGet();
+                    continue;
+                }
+                addChange(job, changes, skipped, pending, userIds, sub, group, GroupSyncOutbox.Operation.ADD);
+            }
+            for (String sub : have) {
+                if (want.contains(sub)) continue;
+                if (!userIds.containsKey(sub)) {
+                    job.unmatchedCognitoMembers.incrementAndGet();
+                    continue;
+                }
+                addChange(job, changes, skipped, pending, userIds, sub, group, GroupSyncOutbox.Operation.REMOVE);
+            }
+        }
+        job.skippedPending.set(skipped.size());
+        if (job.dryRun || changes.isEmpty()) return;
+
+        apply(job, changes, userIds, skipped);
+    }
+
+    private static void addChange(Job job, Map<String, Map<String, GroupSyncOutbox.Operation>> changes,
+                                  Set<String> skipped, Set<Long> pending, Map<String, Long> userIds,
+                                  String sub, String group, GroupSyncOutbox.Operation operation) {
+        if (pending.contains(userIds.get(sub))) {
+            skipped.add(sub);
+            return;
+        }
+        (operation == GroupSyncOutbox.Operation.ADD ? job.toAdd : job.toRemove).incrementAndGet();
+        changes.computeIfAbsent(sub, s -> new LinkedHashMap<>()).put(group, operation);
+    }
+
+    // Users in chunks, each chunk's users in parallel; the sub resolves through the primed username cache
+    private void apply(Job job, Map<String, Map<String, GroupSyncOutbox.Operation>> changes,
+                       Map<String, Long> userIds, Set<String> skipped) {
+        List<String> subs = new ArrayList<>(changes.keySet());
+        for (int from = 0; from < subs.size(); from += chunkSize) {
+            List<String> chunk = subs.subList(from, Math.min(subs.size(), from + chunkSize));
+
+            // Role changes made since the snapshot have their own outbox entries; leave those users to them
+            Set<Long> pending = new HashSet<>(jdbcTemplate.queryForList(
+                    "SELECT DISTINCT user_id FROM group_sync_outbox " +
+                    "WHERE next_attempt_at IS NOT NULL AND user_id = ANY (?::bigint[])",
+                    Long.class, (Object) chunk.stream().map(userIds::get).toArray(Long[]::new)));
+
+            Map<String, CompletableFuture<List<CognitoAdminService.GroupOutcome>>> inFlight = new LinkedHashMap<>();
+            for (String sub : chunk) {
+                if (pending.contains(userIds.get(sub))) {
+                    skipped.add(sub);
+                    continue;
+                }
+                inFlight.put(sub, cognitoAdminService.applyGroupChangesAsync(sub, changes.get(sub)));
+            }
+            Map<String, Set<String>> failedGroups = new LinkedHashMap<>();
+            inFlight.forEach((sub, outcomes) -> {
+                for (CognitoAdminService.GroupOutcome outcome : outcomes.join()) {
+                    if (outcome.success()) {
+                        (outcome.operation() == GroupSyncOutbox.Operation.ADD ? job.added : job.removed).incrementAndGet();
+                        totalChanges.incrementAndGet();
+                    } else {
+                        job.failed.incrementAndGet();
+                        if (!outcome.permanent()) {
+                            failedGroups.computeIfAbsent(sub, s -> new LinkedHashSet<>()).add(outcome.groupName());
+                        }
+                    }
+                }
+            });
+            if (!failedGroups.isEmpty()) {
+                queueRetries(failedGroups);
+            }
+        }
+        job.skippedPending.set(skipped.size());
+    }
+
+    /**
+     * Queues the failed memberships as they stand now rather than as the pass saw them. The
+     * users' rows are share-locked first, so a concurrent role change (which bumps
+     * {@code role_version}) either commits before the roles are read or queues its own,
+     * newer entries after these.
+     */
+    private void queueRetries(Map<String, Set<String>> failedGroups) {
+        transactionTemplate.executeWithoutResult(status -> {
+            String[] subs = failedGroups.keySet().toArray(new String[0]);
+            Map<String, Long> ids = new HashMap<>();
+            jdbcTemplate.query("SELECT id, cognito_sub FROM app_users WHERE cognito_sub = ANY (?) FOR SHARE",
+                    rs -> { ids.put(rs.getString("cognito_sub"), rs.getLong("id")); },
+                    (Object) subs);
+            Map<String, Set<String>> current = new HashMap<>();
+            jdbcTemplate.query("SELECT u.cognito_sub, r.role_name FROM app_users u " +
+                            "JOIN user_roles ur ON ur.user_id = u.id " +
+                            "JOIN roles r ON r.id = ur.role_id " +
+                            "WHERE u.cognito_sub = ANY (?)",
+                    rs -> {
+                        String role = rs.getString("role_name");
+                        if (cognitoGroupMapping.isSynced(role)) {
+                            current.computeIfAbsent(rs.getString("cognito_sub"), s -> new HashSet<>())
+                                    .add(cognitoGroupMapping.toCognitoGroup(role));
+                        }
+                    },
+                    (Object) subs);
+
+            List<GroupSyncOutbox.Change> retries = new ArrayList<>();
+            failedGroups.forEach((sub, groups) -> {
+                Long userId = ids.get(sub);
+                if (userId == null) return; // deleted meanwhile
+                Set<String> want = current.getOrDefault(sub, Set.of());
+                for (String group : groups) {
+                    retries.add(new GroupSyncOutbox.Change(userId, sub, group, want.contains(group)
+                            ? GroupSyncOutbox.Operation.ADD : GroupSyncOutbox.Operation.REMOVE));
+                }
+            });
+            groupSyncOutbox.enqueueAll(retries);
+        });
+    }
+
+    @Override
+    public String metricsName() {
+        return "groupReconciliation";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("running", running.get() != null);
+        metrics.put("runs", runs.get());
+        metrics.put("changesApplied", totalChanges.get());
+        Job last = lastJob;
+        if (last != null) {
+            metrics.put("lastState", last.state);
+            metrics.put("lastFinishedAt", last.finishedAt);
+            metrics.put("lastToAdd", last.toAdd.get());
+            metrics.put("lastToRemove", last.toRemove.get());
+            metrics.put("lastFailed", last.failed.get());
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,271 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies {@code group_sync_outbox} entries to Cognito from a single background thread.
+ * <p>
+ * Entries are claimed in a short transaction by pushing {@code next_attempt_at} out by a lease,
+ * using {@code FOR UPDATE SKIP LOCKED} so several instances can share the table; no
+ * transaction or connection is held during the Cognito calls. Entries for the same user and
+ * group are collapsed to their net effect (the newest operation wins), so an add followed by a
+ * remove costs one call: {@link GroupSyncOutbox} drops older entries when it writes a newer one,
+ * and an older entry that still gets claimed is deleted without a call. The remaining calls of
+ * a batch go out in parallel on the async Cognito client and are gathered before the outcomes
+ * are written back. Failures are retried with exponential backoff and jitter; after
+ * {@code max-attempts}, or at once when the failure is permanent, an entry is parked with a
+ * null {@code next_attempt_at}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupSyncDispatcher implements MetricsSource {
+
+    // An entry with a newer one for the same membership is claimed as superseded and only deleted
+    private static final String CLAIM_SQL =
+            "UPDATE group_sync_outbox o SET next_attempt_at = ? WHERE id IN (" +
+            " SELECT id FROM group_sync_outbox WHERE next_attempt_at <= ?" +
+            " ORDER BY next_attempt_at, id LIMIT ? FOR UPDATE SKIP LOCKED" +
+            ") RETURNING id, user_id, cognito_username, group_name, operation, attempts," +
+            " EXISTS (SELECT 1 FROM group_sync_outbox n WHERE n.id > o.id AND n.group_name = o.group_name" +
+            " AND (n.user_id = o.user_id OR n.cognito_username = o.cognito_username)) AS superseded";
+
+    private record Claimed(long id, Long userId, String cognitoUsername, String groupName,
+                           GroupSyncOutbox.Operation operation, int attempts, boolean superseded) {}
+
+    // Keyed by user id when known, so entries written under different identifiers still collapse
+    private record Member(Long userId, String cognitoUsername, String groupName) {
+        static Member of(Claimed c) {
+            return new Member(c.userId(), c.userId() == null ? c.cognitoUsername() : null, c.groupName());
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CognitoAdminService cognitoAdminService;
+
+    // About one second of the guard's USER_UPDATE budget, so a parallel batch is not rate-limit rejected
+    @Value("${group-sync.batch-size:20}")
+    private int batchSize;
+
+    // Upper bound on how late an entry is picked up if a wake-up was missed (e.g. another instance wrote it)
+    @Value("${group-sync.poll-interval-ms:5000}")
+    private long pollIntervalMs;
+
+    // Claimed entries become due again after this, in case the instance dies mid-batch
+    @Value("${group-sync.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${group-sync.retry-base-ms:2000}")
+    private long retryBaseMs;
+
+    @Value("${group-sync.retry-max-ms:600000}")
+    private long retryMaxMs;
+
+    @Value("${group-sync.max-attempts:12}")
+    private int maxAttempts;
+
+    @Value("${group-sync.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private final Semaphore wakeups = new Semaphore(0);
+    private Thread dispatcherThread;
+    private volatile boolean running;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong parked = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (dispatcherThread != null) return;
+        running = true;
+        dispatcherThread = new Thread(this::runLoop, "group-sync-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+        log.info("Group sync dispatcher started (batchSize={}, pollIntervalMs={})", batchSize, pollIntervalMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (dispatcherThread == null) return;
+        wake();
+        try {
+            dispatcherThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Asks the dispatcher to look for due entries now instead of at the next poll.
+     */
+    public void wake() {
+        if (wakeups.availablePermits() == 0) {
+            wakeups.release();
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                int count = dispatchOnce();
+                if (count < batchSize) {
+                    wakeups.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    wakeups.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Group sync dispatch failed, retrying in {} ms: {}", pollIntervalMs, e.getMessage());
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims one batch of due entries and applies it. Returns the number of entries claimed.
+     */
+    int dispatchOnce() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Claimed> batch = transactionTemplate.execute(status -> jdbcTemplate.query(CLAIM_SQL,
+                (rs, i) -> new Claimed(
+                        rs.getLong("id"),
+                        (Long) rs.getObject("user_id"),
+                        rs.getString("cognito_username"),
+                        rs.getString("group_name"),
+                        GroupSyncOutbox.Operation.valueOf(rs.getString("operation")),
+                        rs.getInt("attempts"),
+                        rs.getBoolean("superseded")),
+                Timestamp.valueOf(now.plusNanos(leaseMs * 1_000_000L)), Timestamp.valueOf(now), batchSize));
+        if (batch == null || batch.isEmpty()) return 0;
+        claimed.addAndGet(batch.size());
+
+        // Superseded by a later change, possibly one written after an earlier attempt failed
+        List<Long> done = new ArrayList<>();
+        Map<Member, List<Claimed>> byMember = new LinkedHashMap<>();
+        batch.stream()
+                .sorted(Comparator.comparingLong(Claimed::id))
+                .forEach(c -> {
+                    if (c.superseded()) {
+                        done.add(c.id());
+                        merged.incrementAndGet();
+                    } else {
+                        byMember.computeIfAbsent(Member.of(c), m -> new ArrayList<>()).add(c);
+                    }
+                });
+
+        // Net effect per membership, then all of a user's groups as one parallel request set
+        Map<String, Map<String, Claimed>> byUser = new LinkedHashMap<>();
+        for (List<Claimed> entries : byMember.values()) {
+            Claimed latest = entries.get(entries.size() - 1);
+            // Older entries for the same membership are superseded whatever happens to the latest
+            for (int i = 0; i < entries.size() - 1; i++) {
+                done.add(entries.get(i).id());
+            }
+            merged.addAndGet(entries.size() - 1);
+            byUser.computeIfAbsent(latest.cognitoUsername(), u -> new LinkedHashMap<>()).put(latest.groupName(), latest);
+        }
+
+        Map<String, CompletableFuture<List<CognitoAdminService.GroupOutcome>>> pending = new LinkedHashMap<>();
+        byUser.forEach((username, groups) -> {
+            Map<String, GroupSyncOutbox.Operation> changes = new LinkedHashMap<>();
+            groups.forEach((group, entry) -> changes.put(group, entry.operation()));
+            pending.put(username, cognitoAdminService.applyGroupChangesAsync(username, changes));
+        });
+        pending.forEach((username, outcomes) -> {
+            Map<String, Claimed> groups = byUser.get(username);
+            for (CognitoAdminService.GroupOutcome outcome : outcomes.join()) {
+                Claimed entry = groups.get(outcome.groupName());
+                if (outcome.success()) {
+                    applied.incrementAndGet();
+                    done.add(entry.id());
+                } else {
+                    reschedule(entry, outcome.error(), outcome.permanent());
+                }
+            }
+        });
+        if (!done.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM group_sync_outbox WHERE id = ANY (?::bigint[])",
+                    (Object) done.toArray(new Long[0]));
+        }
+        return batch.size();
+    }
+
+    private void reschedule(Claimed entry, String failure, boolean permanent) {
+        failedAttempts.incrementAndGet();
+        int attempts = entry.attempts() + 1;
+        String error = failure == null ? "unknown error" : failure;
+        if (error.length() > 1000) error = error.substring(0, 1000);
+
+        Timestamp next = null;
+        if (permanent || attempts >= maxAttempts) {
+            parked.incrementAndGet();
+            log.error("Giving up on Cognito group {} {} for {} after {} attempts{}: {}",
+                    entry.operation(), entry.groupName(), entry.cognitoUsername(), attempts,
+                    permanent ? " (not retryable)" : "", error);
+        } else {
+            next = Timestamp.valueOf(LocalDateTime.now().plusNanos(backoffMillis(attempts) * 1_000_000L));
+            log.warn("Cognito group {} {} for {} failed (attempt {}), retrying at {}: {}",
+                    entry.operation(), entry.groupName(), entry.cognitoUsername(), attempts, next, error);
+        }
+        jdbcTemplate.update("UPDATE group_sync_outbox SET attempts = ?, next_attempt_at = ?, last_error = ? WHERE id = ?",
+                attempts, next, error, entry.id());
+    }
+
+    // Exponential from retry-base-ms, capped at retry-max-ms, with +/-20% jitter so failed
+    // entries do not retry in lockstep
+    private long backoffMillis(int attempts) {
+        long delay = retryBaseMs << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > retryMaxMs) delay = retryMaxMs;
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return (long) (delay * jitter);
+    }
+
+    @Override
+    public String metricsName() {
+        return "groupSync";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("claimed", claimed.get());
+        metrics.put("applied", applied.get());
+        metrics.put("merged", merged.get());
+        metrics.put("failedAttempts", failedAttempts.get());
+        metrics.put("parked", parked.get());
+        return metrics;
+    }
+}
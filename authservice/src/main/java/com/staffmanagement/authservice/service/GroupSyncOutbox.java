@@ -0,0 +1,93 @@
+package com.staffmanagement.authservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records Cognito group membership changes in {@code group_sync_outbox} inside the caller's
+ * transaction, so they commit or roll back with the role change. No Cognito call happens
+ * here; {@link GroupSyncDispatcher} applies the entries and is woken once the transaction commits.
+ */
+@Service
+@RequiredArgsConstructor
+public class GroupSyncOutbox {
+
+    public enum Operation { ADD, REMOVE }
+
+    public record Change(Long userId, String cognitoUsername, String groupName, Operation operation) {}
+
+    // Keeps one statement well below the PostgreSQL bind parameter limit
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GroupSyncDispatcher groupSyncDispatcher;
+
+    public void enqueue(Long userId, String cognitoUsername, String groupName, Operation operation) {
+        enqueueAll(List.of(new Change(userId, cognitoUsername, groupName, operation)));
+    }
+
+    /**
+     * Writes the changes and drops any older entries for the same membership, matched by user id
+     * or Cognito username, so a retry scheduled for an earlier change cannot land after this one.
+     */
+    public void enqueueAll(Collection<Change> changes) {
+        if (changes.isEmpty()) return;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Change> list = List.copyOf(changes);
+        for (int from = 0; from < list.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Change> chunk = list.subList(from, Math.min(list.size(), from + MAX_ROWS_PER_STATEMENT));
+            supersede(chunk);
+            Object[] args = new Object[chunk.size() * 6];
+            int i = 0;
+            for (Change change : chunk) {
+                args[i++] = change.userId();
+                args[i++] = change.cognitoUsername();
+                args[i++] = change.groupName();
+                args[i++] = change.operation().name();
+                args[i++] = now;
+                args[i++] = now;
+            }
+            jdbcTemplate.update("INSERT INTO group_sync_outbox " +
+                    "(user_id, cognito_username, group_name, operation, attempts, next_attempt_at, created_at) VALUES " +
+                    String.join(", ", Collections.nCopies(chunk.size(), "(?::bigint, ?, ?, ?, 0, ?, ?)")), args);
+        }
+        wakeAfterCommit();
+    }
+
+    private void supersede(List<Change> chunk) {
+        Object[] args = new Object[chunk.size() * 3];
+        int i = 0;
+        for (Change change : chunk) {
+            args[i++] = change.userId();
+            args[i++] = change.cognitoUsername();
+            args[i++] = change.groupName();
+        }
+        jdbcTemplate.update("DELETE FROM group_sync_outbox o USING (VALUES " +
+                String.join(", ", Collections.nCopies(chunk.size(), "(?::bigint, ?, ?)")) +
+                ") AS v(user_id, cognito_username, group_name) " +
+                "WHERE o.group_name = v.group_name " +
+                "AND (o.user_id = v.user_id OR o.cognito_username = v.cognito_username)", args);
+    }
+
+    private void wakeAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            groupSyncDispatcher.wake();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                groupSyncDispatcher.wake();
+            }
+        });
+    }
+}
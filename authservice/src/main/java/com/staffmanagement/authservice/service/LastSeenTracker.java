@@ -0,0 +1,159 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers when each user was last active and writes {@code app_users.last_login_at}
+ * in one batched UPDATE per interval instead of one entity update per request.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LastSeenTracker implements MetricsSource {
+
+    // Slot value once the flusher has removed it from the map; touches must install a new slot
+    private static final long RETIRED = -1L;
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // user id -> epoch millis of the latest activity not yet written, 0 if nothing is pending
+    private final ConcurrentHashMap<Long, AtomicLong> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong touches = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsFlushed = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    /**
+     * Records activity for a user now. Lock-free unless a new slot is needed; never touches the database.
+     */
+    public void touch(Long userId) {
+        if (userId == null) return;
+        touches.incrementAndGet();
+        touchAt(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * Last activity recorded in memory but possibly not yet flushed, combined with the persisted value.
+     */
+    public LocalDateTime lastSeen(Long userId, LocalDateTime persisted) {
+        AtomicLong slot = userId == null ? null : pending.get(userId);
+        long millis = slot == null ? 0 : slot.get();
+        if (millis <= 0) return persisted;
+        LocalDateTime inMemory = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        return persisted == null || inMemory.isAfter(persisted) ? inMemory : persisted;
+    }
+
+    @Scheduled(fixedDelayString = "${last-seen.flush-interval-ms:30000}")
+    public void flush() {
+        Map<Long, Long> batch = new LinkedHashMap<>();
+        for (Map.Entry<Long, AtomicLong> entry : pending.entrySet()) {
+            AtomicLong slot = entry.getValue();
+            long millis = slot.getAndSet(0);
+            if (millis > 0) {
+                batch.put(entry.getKey(), millis);
+            } else {
+                // Idle for a whole interval: drop the slot so the map only holds active users.
+                // Retiring and removing happen under the map's lock for the key, so a touch
+                // that sees RETIRED always finds the slot gone when it installs a new one.
+                pending.computeIfPresent(entry.getKey(),
+                        (id, current) -> current == slot && slot.compareAndSet(0, RETIRED) ? null : current);
+            }
+        }
+        if (batch.isEmpty()) return;
+
+        List<Map.Entry<Long, Long>> rows = new ArrayList<>(batch.entrySet());
+        try {
+            for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+                update(rows.subList(from, Math.min(rows.size(), from + MAX_ROWS_PER_STATEMENT)));
+            }
+            flushes.incrementAndGet();
+            rowsFlushed.addAndGet(rows.size());
+        } catch (Exception e) {
+            failedFlushes.incrementAndGet();
+            log.warn("Failed to flush last-seen timestamps for {} users, will retry: {}", rows.size(), e.getMessage());
+            for (Map.Entry<Long, Long> row : rows) {
+                touchAt(row.getKey(), row.getValue());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void touchAt(Long userId, long millis) {
+        AtomicLong slot = pending.get(userId);
+        if (slot != null && accumulate(slot, millis)) return;
+        // No slot yet, or the flusher retired and removed it: install a fresh one
+        pending.compute(userId, (id, current) ->
+                current != null && accumulate(current, millis) ? current : new AtomicLong(millis));
+    }
+
+    /**
+     * Raises the slot to {@code millis}; false if the slot was retired and must not be written.
+     */
+    private static boolean accumulate(AtomicLong slot, long millis) {
+        long current;
+        do {
+            current = slot.get();
+            if (current == RETIRED) return false;
+            if (current >= millis) return true;
+        } while (!slot.compareAndSet(current, millis));
+        return true;
+    }
+
+    private void update(List<Map.Entry<Long, Long>> rows) {
+        StringBuilder sql = new StringBuilder("UPDATE app_users AS u SET last_login_at = v.last_seen FROM (VALUES ");
+        Object[] args = new Object[rows.size() * 2];
+        int[] types = new int[args.length];
+        int i = 0;
+        for (Map.Entry<Long, Long> row : rows) {
+            if (i > 0) sql.append(", ");
+            sql.append("(?::bigint, ?::timestamp)");
+            types[i] = Types.BIGINT;
+            args[i++] = row.getKey();
+            types[i] = Types.TIMESTAMP;
+            args[i++] = new Timestamp(row.getValue());
+        }
+        sql.append(") AS v(id, last_seen) ")
+                .append("WHERE u.id = v.id AND (u.last_login_at IS NULL OR u.last_login_at < v.last_seen)");
+        jdbcTemplate.update(sql.toString(), args, types);
+    }
+
+    @Override
+    public String metricsName() {
+        return "lastSeen";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("trackedUsers", pending.size());
+        metrics.put("touches", touches.get());
+        metrics.put("flushes", flushes.get());
+        metrics.put("rowsFlushed", rowsFlushed.get());
+        metrics.put("failedFlushes", failedFlushes.get());
+        return metrics;
+    }
+}
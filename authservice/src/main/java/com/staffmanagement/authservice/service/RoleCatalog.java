@@ -0,0 +1,147 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.entity.Role;
+import com.staffmanagement.authservice.repository.RoleRepository;
+import com.staffmanagement.authservice.utils.MetricsSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the {@code roles} table. Roles change rarely, so lookups by name or id
+ * are served from memory; a change swaps in a whole new snapshot, so readers never see a
+ * half-updated catalog.
+ * <p>
+ * Code that writes roles calls {@link #refreshAfterCommit()}; a periodic refresh picks up
+ * changes made by other instances.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RoleCatalog implements MetricsSource {
+
+    private final RoleRepository roleRepository;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    public record RoleEntry(Long id, String roleName, String description, boolean systemRole) {}
+
+    /**
+     * One consistent view of all roles. The ETag is a hash of the content, so every instance
+     * serving the same roles hands out the same tag.
+     */
+    public record Snapshot(List<RoleEntry> roles,
+                           Map<String, RoleEntry> byName,
+                           Map<Long, RoleEntry> byId,
+                           String etag) {}
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = current.get();
+        return snapshot != null ? snapshot : refresh();
+    }
+
+    public Optional<RoleEntry> byName(String roleName) {
+        return Optional.ofNullable(snapshot().byName().get(roleName));
+    }
+
+    public Optional<RoleEntry> byId(Long id) {
+        return Optional.ofNullable(snapshot().byId().get(id));
+    }
+
+    /**
+     * Reloads the catalog and publishes it if the content changed.
+     */
+    @Scheduled(fixedDelayString = "${roles.catalog.refresh-interval-ms:300000}",
+            initialDelayString = "${roles.catalog.refresh-interval-ms:300000}")
+    public Snapshot refresh() {
+        refreshLock.lock();
+        try {
+            List<RoleEntry> roles = roleRepository.findAll(Sort.by("roleName")).stream()
+                    .map(RoleCatalog::toEntry)
+                    .toList();
+            Snapshot next = new Snapshot(
+                    roles,
+                    roles.stream().collect(Collectors.toUnmodifiableMap(RoleEntry::roleName, Function.identity())),
+                    roles.stream().collect(Collectors.toUnmodifiableMap(RoleEntry::id, Function.identity())),
+                    etag(roles));
+            Snapshot previous = current.get();
+            if (previous != null && previous.etag().equals(next.etag())) {
+                return previous;
+            }
+            current.set(next);
+            refreshes.incrementAndGet();
+            log.info("Role catalog loaded ({} roles, etag {})", roles.size(), next.etag());
+            return next;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Refreshes once the current transaction commits, so the new rows are visible to the reload.
+     */
+    public void refreshAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh();
+            }
+        });
+    }
+
+    private static RoleEntry toEntry(Role role) {
+        return new RoleEntry(role.getId(), role.getRoleName(), role.getDescription(), role.isSystemRole());
+    }
+
+    private static String etag(List<RoleEntry> roles) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (RoleEntry role : roles) {
+                digest.update((role.id() + "\u0000" + role.roleName() + "\u0000" + role.description()
+                        + "\u0000" + role.systemRole() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "roleCatalog";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Snapshot snapshot = current.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("roles", snapshot == null ? 0 : snapshot.roles().size());
+        metrics.put("etag", snapshot == null ? null : snapshot.etag());
+        metrics.put("refreshes", refreshes.get());
+        return metrics;
+    }
+}
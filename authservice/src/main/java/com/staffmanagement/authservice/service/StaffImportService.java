@@ -0,0 +1,694 @@
+package com.staffmanagement.authservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.staffmanagement.authservice.dto.response.UserProfileDTO;
+import com.staffmanagement.authservice.security.AuthorityIndex;
+import com.staffmanagement.authservice.utils.LocalCache;
+import com.staffmanagement.authservice.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk onboarding of staff from a CSV or NDJSON upload.
+ * <p>
+ * The upload is spooled to a file and imported by a background job, so the request returns
+ * immediately with a job id to poll. Rows are read one at a time and written in chunks: one
+ * multi-row upsert into {@code app_users} and one into {@code user_roles} per chunk, each chunk
+ * in its own transaction. If a chunk fails, its rows are retried one by one so a single bad
+ * row only rejects itself. Rejected rows are appended to an NDJSON error report on disk.
+ * Memory use is bounded by the chunk size whatever the file size.
+ * <p>
+ * Roles in the file are added to the user's existing roles; none are removed. Cognito group
+ * memberships for synced roles are written to the group sync outbox in the chunk's transaction
+ * and applied by {@link GroupSyncDispatcher}.
+ */
+@Slf4j
+@Service
+public class StaffImportService implements MetricsSource {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * Explicit format parameter first, then the request content type, defaulting to CSV.
+         */
+        public static Format of(String format, String contentType) {
+            if (format != null && !format.isBlank()) {
+                try {
+                    return valueOf(format.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unsupported import format: " + format);
+                }
+            }
+            if (contentType != null && (contentType.contains("ndjson") || contentType.contains("jsonl"))) {
+                return NDJSON;
+            }
+            return CSV;
+        }
+    }
+
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    /**
+     * The upload exceeded {@code import.max-upload-bytes}; nothing was queued.
+     */
+    public static class UploadTooLargeException extends RuntimeException {
+        public UploadTooLargeException(long maxBytes) {
+            super("Import upload exceeds the limit of " + maxBytes + " bytes");
+        }
+    }
+
+    public record ImportStatus(String id,
+                               Format format,
+                               State state,
+                               long rowsRead,
+                               long rowsImported,
+                               long rowsFailed,
+                               long groupsQueued,
+                               Instant startedAt,
+                               Instant finishedAt,
+                               String message) {}
+
+    // One input row; error is set when the row could not be parsed or validated
+    record StaffRow(long line, String cognitoSub, String email, String username, String displayName,
+                    String phoneNumber, List<String> roles, String error) {}
+
+    private static final class Job {
+        final String id;
+        final Format format;
+        final Path upload;
+        final Path errors;
+        final String startedBy;
+        final Instant startedAt = Instant.now();
+        volatile State state = State.QUEUED;
+        volatile Instant finishedAt;
+        volatile String message;
+        final AtomicLong rowsRead = new AtomicLong();
+        final AtomicLong rowsImported = new AtomicLong();
+        final AtomicLong rowsFailed = new AtomicLong();
+        final AtomicLong groupsQueued = new AtomicLong();
+
+        Job(String id, Format format, Path upload, Path errors, String startedBy) {
+            this.id = id;
+            this.format = format;
+            this.upload = upload;
+            this.errors = errors;
+            this.startedBy = startedBy;
+        }
+
+        ImportStatus status() {
+            return new ImportStatus(id, format, state, rowsRead.get(), rowsImported.get(), rowsFailed.get(),
+                    groupsQueued.get(), startedAt, finishedAt, message);
+        }
+    }
+
+    private static final int USER_PARAMS = 8;
+    private static final int ROLE_PARAMS = 4;
+    // Postgres caps bind parameters per statement at 32767
+    private static final int MAX_ROLE_TUPLES = 32767 / ROLE_PARAMS;
+    private static final int MAX_FIELD_CHARS = 65536;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final RoleCatalog roleCatalog;
+    private final CognitoGroupMapping cognitoGroupMapping;
+    private final GroupSyncOutbox groupSyncOutbox;
+    private final AuthorityIndex authorityIndex;
+    private final LocalCache<String, UserProfileDTO> userProfileCache;
+
+    private final Path directory;
+    private final int chunkSize;
+    private final long maxUploadBytes;
+    private final Duration retention;
+    private final ExecutorService jobExecutor;
+
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong totalRowsImported = new AtomicLong();
+    private final AtomicLong totalRowsFailed = new AtomicLong();
+    private final AtomicLong failedChunks = new AtomicLong();
+
+    public StaffImportService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              RoleCatalog roleCatalog,
+                              CognitoGroupMapping cognitoGroupMapping,
+                              GroupSyncOutbox groupSyncOutbox,
+                              AuthorityIndex authorityIndex,
+                              LocalCache<String, UserProfileDTO> userProfileCache,
+                              @Value("${import.directory:${java.io.tmpdir}/authservice-imports}") String directory,
+                              @Value("${import.chunk-size:500}") int chunkSize,
+                              @Value("${import.max-upload-bytes:104857600}") long maxUploadBytes,
+                              @Value("${import.max-concurrent-jobs:2}") int maxConcurrentJobs,
+                              @Value("${import.retention-minutes:1440}") long retentionMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.roleCatalog = roleCatalog;
+        this.cognitoGroupMapping = cognitoGroupMapping;
+        this.groupSyncOutbox = groupSyncOutbox;
+        this.authorityIndex = authorityIndex;
+        this.userProfileCache = userProfileCache;
+        this.directory = Path.of(directory);
+        this.chunkSize = Math.max(1, Math.min(chunkSize, 32767 / USER_PARAMS));
+        this.maxUploadBytes = maxUploadBytes;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.jobExecutor = Executors.newFixedThreadPool(maxConcurrentJobs,
+                Thread.ofPlatform().name("staff-import-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    public long maxUploadBytes() {
+        return maxUploadBytes;
+    }
+
+    /**
+     * Spools the upload to disk and schedules the import. Returns once the body is stored.
+     * Throws {@link UploadTooLargeException} as soon as the body passes {@code import.max-upload-bytes}.
+     */
+    public ImportStatus start(InputStream body, Format format, String startedBy) throws IOException {
+        Files.createDirectories(directory);
+        String id = UUID.randomUUID().toString();
+        Path upload = directory.resolve(id + ".upload");
+        spool(body, upload);
+
+        Job job = new Job(id, format, upload, directory.resolve(id + ".errors.ndjson"), startedBy);
+        jobs.put(id, job);
+        jobExecutor.submit(() -> run(job));
+        log.info("Staff import {} queued by {} ({} bytes, {})", id, startedBy, Files.size(upload), format);
+        return job.status();
+    }
+
+    private void spool(InputStream body, Path upload) throws IOException {
+        long written = 0;
+        try (OutputStream out = Files.newOutputStream(upload, StandardOpenOption.CREATE_NEW)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                written += read;
+                if (written > maxUploadBytes) {
+                    throw new UploadTooLargeException(maxUploadBytes);
+                }
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(upload);
+            throw e;
+        }
+    }
+
+    public Optional<ImportStatus> status(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(Job::status);
+    }
+
+    /**
+     * The NDJSON error report of a job, once the job has started.
+     */
+    public Optional<Path> errorReport(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId))
+                .map(job -> job.errors)
+                .filter(Files::exists);
+    }
+
+    private void run(Job job) {
+        job.state = State.RUNNING;
+        try (BufferedReader reader = Files.newBufferedReader(job.upload, StandardCharsets.UTF_8);
+             BufferedWriter errors = Files.newBufferedWriter(job.errors, StandardCharsets.UTF_8)) {
+            RowSource source = job.format == Format.CSV ? new CsvRowSource(reader) : new NdjsonRowSource(reader);
+            List<StaffRow> chunk = new ArrayList<>(chunkSize);
+            StaffRow row;
+            while ((row = source.next()) != null) {
+                job.rowsRead.incrementAndGet();
+                row = validate(row);
+                if (row.error() != null) {
+                    reject(job, errors, row, row.error());
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    importChunk(job, chunk, errors);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(job, chunk, errors);
+            }
+            job.state = State.COMPLETED;
+            log.info("Staff import {} completed: {} imported, {} rejected",
+                    job.id, job.rowsImported.get(), job.rowsFailed.get());
+        } catch (Exception e) {
+            job.state = State.FAILED;
+            job.message = e.getMessage();
+            log.error("Staff import {} failed after {} rows: {}", job.id, job.rowsRead.get(), e.getMessage(), e);
+        } finally {
+            job.finishedAt = Instant.now();
+            try {
+                Files.deleteIfExists(job.upload);
+            } catch (IOException e) {
+                log.warn("Could not delete import upload {}: {}", job.upload, e.getMessage());
+            }
+        }
+    }
+
+    private StaffRow validate(StaffRow row) {
+        if (row.error() != null) return row;
+        if (isBlank(row.cognitoSub())) {
+            return withError(row, "cognitoSub is required");
+        }
+        if (isBlank(row.email()) || !row.email().contains("@")) {
+            return withError(row, "a valid email is required");
+        }
+        for (String role : row.roles()) {
+            if (roleCatalog.byName(role).isEmpty()) {
+                return withError(row, "unknown role: " + role);
+            }
+        }
+        return row;
+    }
+
+    private void importChunk(Job job, List<StaffRow> rows, BufferedWriter errors) throws IOException {
+        // A sub may appear once per upsert statement; a later row for the same user wins
+        Map<String, StaffRow> bySub = new LinkedHashMap<>();
+        for (StaffRow row : rows) {
+            StaffRow earlier = bySub.put(row.cognitoSub(), row);
+            if (earlier != null) {
+                reject(job, errors, earlier, "superseded by line " + row.line() + " for the same cognitoSub");
+            }
+        }
+        List<StaffRow> unique = new ArrayList<>(bySub.values());
+
+        try {
+            Map<String, Long> ids = transactionTemplate.execute(status -> writeRows(unique, job.startedBy));
+            imported(job, unique, ids);
+        } catch (DataAccessException chunkFailure) {
+            failedChunks.incrementAndGet();
+            log.debug("Import {} chunk failed, retrying row by row: {}", job.id, chunkFailure.getMessage());
+            for (StaffRow row : unique) {
+                try {
+                    Map<String, Long> ids = transactionTemplate.execute(status -> writeRows(List.of(row), job.startedBy));
+                    imported(job, List.of(row), ids);
+                } catch (DataAccessException e) {
+                    reject(job, errors, row, rootMessage(e));
+                }
+            }
+        }
+    }
+
+    /**
+     * One upsert for the users of the chunk, then one insert for their role assignments that
+     * also bumps role_version of users who gained a role. Users the upsert created also get the
+     * default role, as at a first login: provisioning skips it for a row that already exists.
+     * Returns user ids by cognito sub.
+     */
+    private Map<String, Long> writeRows(List<StaffRow> rows, String actor) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO app_users (cognito_sub, email, username, display_name, phone_number, " +
+                "locale, is_active, email_verified, phone_verified, mfa_enabled, created_at, updated_at, created_by) VALUES ");
+        Object[] args = new Object[rows.size() * USER_PARAMS];
+        int[] types = new int[args.length];
+        int i = 0;
+        for (int r = 0; r < rows.size(); r++) {
+            StaffRow row = rows.get(r);
+            if (r > 0) sql.append(", ");
+            sql.append("(?, ?, ?, ?, ?, 'en', true, false, false, false, ?, ?, ?)");
+            i = bind(args, types, i, row.cognitoSub(), Types.VARCHAR);
+            i = bind(args, types, i, row.email(), Types.VARCHAR);
+            i = bind(args, types, i, row.username(), Types.VARCHAR);
+            i = bind(args, types, i, row.displayName(), Types.VARCHAR);
+            i = bind(args, types, i, row.phoneNumber(), Types.VARCHAR);
+            i = bind(args, types, i, now, Types.TIMESTAMP);
+            i = bind(args, types, i, now, Types.TIMESTAMP);
+            i = bind(args, types, i, actor, Types.VARCHAR);
+        }
+        sql.append(" ON CONFLICT (cognito_sub) DO UPDATE SET email = EXCLUDED.email, " +
+                "username = COALESCE(EXCLUDED.username, app_users.username), " +
+                "display_name = COALESCE(EXCLUDED.display_name, app_users.display_name), " +
+                "phone_number = COALESCE(EXCLUDED.phone_number, app_users.phone_number), " +
+                "updated_at = EXCLUDED.updated_at, updated_by = EXCLUDED.created_by " +
+                "RETURNING id, cognito_sub, (xmax = 0) AS created");
+
+        // xmax = 0 only holds for a freshly inserted tuple
+        Map<String, Long> ids = new HashMap<>();
+        Set<String> created = new HashSet<>();
+        jdbcTemplate.query(sql.toString(), args, types, rs -> {
+            ids.put(rs.getString("cognito_sub"), rs.getLong("id"));
+            if (rs.getBoolean("created")) created.add(rs.getString("cognito_sub"));
+        });
+
+        Long defaultRoleId = roleCatalog.byName(UserProvisioningService.DEFAULT_ROLE)
+                .map(RoleCatalog.RoleEntry::id).orElse(null);
+        List<Object[]> assignments = new ArrayList<>();
+        for (StaffRow row : rows) {
+            Long userId = ids.get(row.cognitoSub());
+            for (String role : row.roles()) {
+                assignments.add(new Object[]{userId, roleCatalog.byName(role).orElseThrow().id()});
+            }
+            if (defaultRoleId != null && created.contains(row.cognitoSub())
+                    && !row.roles().contains(UserProvisioningService.DEFAULT_ROLE)) {
+                assignments.add(new Object[]{userId, defaultRoleId});
+            }
+        }
+        for (int from = 0; from < assignments.size(); from += MAX_ROLE_TUPLES) {
+            insertRoles(assignments.subList(from, Math.min(assignments.size(), from + MAX_ROLE_TUPLES)), actor, now);
+        }
+
+        // Group memberships commit with the rows; the dispatcher applies them to Cognito
+        List<GroupSyncOutbox.Change> changes = new ArrayList<>();
+        for (StaffRow row : rows) {
+            String username = CognitoGroupMapping.cognitoUsername(row.cognitoSub(), row.username(), row.email());
+            for (String group : cognitoGroups(row)) {
+                changes.add(new GroupSyncOutbox.Change(ids.get(row.cognitoSub()), username, group,
+                        GroupSyncOutbox.Operation.ADD));
+            }
+        }
+        groupSyncOutbox.enqueueAll(changes);
+        return ids;
+    }
+
+    private void insertRoles(List<Object[]> assignments, String actor, Timestamp now) {
+        StringBuilder sql = new StringBuilder("WITH added AS (" +
+                "INSERT INTO user_roles (user_id, role_id, assigned_by, assigned_at) VALUES ");
+        Object[] args = new Object[assignments.size() * ROLE_PARAMS + 1];
+        int[] types = new int[args.length];
+        int i = 0;
+        for (int a = 0; a < assignments.size(); a++) {
+            if (a > 0) sql.append(", ");
+            sql.append("(?, ?, ?, ?)");
+            i = bind(args, types, i, assignments.get(a)[0], Types.BIGINT);
+            i = bind(args, types, i, assignments.get(a)[1], Types.BIGINT);
+            i = bind(args, types, i, actor, Types.VARCHAR);
+            i = bind(args, types, i, now, Types.TIMESTAMP);
+        }
+        sql.append(" ON CONFLICT (user_id, role_id) DO NOTHING RETURNING user_id) " +
+                "UPDATE app_users SET role_version = role_version + 1, updated_at = ? " +
+                "WHERE id IN (SELECT user_id FROM added)");
+        bind(args, types, i, now, Types.TIMESTAMP);
+        jdbcTemplate.update(sql.toString(), args, types);
+    }
+
+    private static int bind(Object[] args, int[] types, int i, Object value, int type) {
+        args[i] = value;
+        types[i] = type;
+        return i + 1;
+    }
+
+    // Runs after the chunk committed, so its users are authorised by their new roles straight away
+    private void imported(Job job, List<StaffRow> rows, Map<String, Long> ids) {
+        authorityIndex.reload(ids.values());
+        job.rowsImported.addAndGet(rows.size());
+        totalRowsImported.addAndGet(rows.size());
+        for (StaffRow row : rows) {
+            userProfileCache.invalidate(row.cognitoSub());
+            job.groupsQueued.addAndGet(cognitoGroups(row).size());
+        }
+    }
+
+    private Set<String> cognitoGroups(StaffRow row) {
+        Set<String> groups = new LinkedHashSet<>();
+        for (String role : row.roles()) {
+            if (cognitoGroupMapping.isSynced(role)) {
+                groups.add(cognitoGroupMapping.toCognitoGroup(role));
+            }
+        }
+        return groups;
+    }
+
+    private void reject(Job job, BufferedWriter errors, StaffRow row, String error) throws IOException {
+        job.rowsFailed.incrementAndGet();
+        totalRowsFailed.incrementAndGet();
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("line", row.line());
+        entry.put("cognitoSub", row.cognitoSub());
+        entry.put("email", row.email());
+        entry.put("error", error);
+        errors.write(objectMapper.writeValueAsString(entry));
+        errors.write('\n');
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    private static StaffRow withError(StaffRow row, String error) {
+        return new StaffRow(row.line(), row.cognitoSub(), row.email(), row.username(), row.displayName(),
+                row.phoneNumber(), row.roles(), error);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static List<String> splitRoles(String value) {
+        if (value == null || value.isBlank()) return List.of();
+        return Arrays.stream(value.split("[;|]"))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Drops finished jobs and their error reports once they are past retention.
+     */
+    @Scheduled(fixedDelayString = "${import.cleanup-interval-ms:600000}")
+    public void purgeFinishedJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == null || job.finishedAt.isAfter(cutoff)) return false;
+            try {
+                Files.deleteIfExists(job.errors);
+            } catch (IOException e) {
+                log.warn("Could not delete import error report {}: {}", job.errors, e.getMessage());
+            }
+            return true;
+        });
+    }
+
+    private interface RowSource {
+        StaffRow next() throws IOException;
+    }
+
+    /**
+     * CSV with a header row; quoted fields may contain commas, doubled quotes and line breaks.
+     * Roles are separated by ';' or '|'.
+     */
+    private static final class CsvRowSource implements RowSource {
+        private final BufferedReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private long line;
+
+        CsvRowSource(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header == null) return;
+            for (int c = 0; c < header.size(); c++) {
+                String name = header.get(c).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT).replace("_", "");
+                columns.put(name, c);
+            }
+            if (!columns.containsKey("email") || !(columns.containsKey("cognitosub") || columns.containsKey("sub"))) {
+                throw new IOException("CSV header must contain email and cognitoSub columns");
+            }
+        }
+
+        @Override
+        public StaffRow next() throws IOException {
+            List<String> fields;
+            do {
+                fields = readRecord();
+                if (fields == null) return null;
+            } while (fields.size() == 1 && fields.get(0).isBlank());
+            long at = line;
+            return new StaffRow(at,
+                    emptyToNull(field(fields, "cognitosub", "sub")),
+                    emptyToNull(field(fields, "email")),
+                    emptyToNull(field(fields, "username")),
+                    emptyToNull(field(fields, "displayname")),
+                    emptyToNull(field(fields, "phonenumber")),
+                    splitRoles(field(fields, "roles")),
+                    null);
+        }
+
+        private String field(List<String> fields, String... names) {
+            for (String name : names) {
+                Integer c = columns.get(name);
+                if (c != null && c < fields.size()) return fields.get(c);
+            }
+            return null;
+        }
+
+        private List<String> readRecord() throws IOException {
+            String text = reader.readLine();
+            if (text == null) return null;
+            line++;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == text.length()) {
+                    if (!quoted) {
+                        fields.add(field.toString());
+                        return fields;
+                    }
+                    // Quoted field continues on the next physical line
+                    text = reader.readLine();
+                    if (text == null) throw new IOException("Unterminated quoted field starting before line " + line);
+                    line++;
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char ch = text.charAt(i++);
+                if (quoted) {
+                    if (ch == '"') {
+                        if (i < text.length() && text.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(ch);
+                    }
+                } else if (ch == '"') {
+                    quoted = true;
+                } else if (ch == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(ch);
+                }
+                if (field.length() > MAX_FIELD_CHARS) {
+                    throw new IOException("Field longer than " + MAX_FIELD_CHARS + " characters at line " + line);
+                }
+            }
+        }
+    }
+
+    /**
+     * One JSON object per line; roles may be an array or a ';'-separated string.
+     */
+    private final class NdjsonRowSource implements RowSource {
+        private final BufferedReader reader;
+        private long line;
+
+        NdjsonRowSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public StaffRow next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                if (text == null) return null;
+                line++;
+            } while (text.isBlank());
+
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (JsonProcessingException e) {
+                return new StaffRow(line, null, null, null, null, null, List.of(), "invalid JSON: " + e.getOriginalMessage());
+            }
+            if (node == null || !node.isObject()) {
+                return new StaffRow(line, null, null, null, null, null, List.of(), "expected a JSON object");
+            }
+            List<String> roles;
+            JsonNode rolesNode = node.get("roles");
+            if (rolesNode != null && rolesNode.isArray()) {
+                Set<String> names = new LinkedHashSet<>();
+                rolesNode.forEach(r -> {
+                    if (!r.asText().isBlank()) names.add(r.asText().trim());
+                });
+                roles = List.copyOf(names);
+            } else {
+                roles = splitRoles(rolesNode == null ? null : rolesNode.asText());
+            }
+            return new StaffRow(line,
+                    emptyToNull(text(node, "cognitoSub", "sub")),
+                    emptyToNull(text(node, "email")),
+                    emptyToNull(text(node, "username")),
+                    emptyToNull(text(node, "displayName")),
+                    emptyToNull(text(node, "phoneNumber")),
+                    roles,
+                    null);
+        }
+
+        private static String text(JsonNode node, String... names) {
+            for (String name : names) {
+                JsonNode value = node.get(name);
+                if (value != null && !value.isNull()) return value.asText();
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "staffImport";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("jobs", jobs.size());
+        metrics.put("running", jobs.values().stream().filter(j -> j.state == State.RUNNING).count());
+        metrics.put("rowsImported", totalRowsImported.get());
+        metrics.put("rowsFailed", totalRowsFailed.get());
+        metrics.put("failedChunks", failedChunks.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,107 @@
+package com.staffmanagement.authservice.service;
+
+import com.staffmanagement.authservice.dto.response.UserProfileDTO;
+import com.staffmanagement.authservice.security.AuthorityIndex;
+import com.staffmanagement.authservice.utils.LocalCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Creates or refreshes the {@code app_users} row for a Cognito identity and attaches the
+ * default {@code USER} role in a single statement.
+ * <p>
+ * Concurrent first logins for one identity (web and mobile racing each other) are serialised
+ * with a transaction-scoped advisory lock on the sub, and the insert arbitrates on
+ * {@code cognito_sub} with {@code ON CONFLICT}, so they converge on one row. Without the lock
+ * both inserts could pass the arbiter check, and the loser would then fail on the
+ * {@code email} unique index, which {@code ON CONFLICT} does not cover. An existing row is only
+ * updated when the identity claims actually differ.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserProvisioningService {
+
+    static final String DEFAULT_ROLE = "USER";
+
+    // First key of the two-key advisory lock taken per sub; keeps these locks apart from others
+    private static final int PROVISION_LOCK_SPACE = 0x7072_6f76;
+
+    // upsert returns a row when it inserted or changed the user; existing covers the unchanged case.
+    // xmax = 0 only holds for a freshly inserted tuple.
+    private static final String PROVISION_SQL =
+            "WITH upsert AS (" +
+            " INSERT INTO app_users (cognito_sub, email, username, display_name, locale, is_active," +
+            "  email_verified, phone_verified, mfa_enabled, created_at, updated_at)" +
+            " VALUES (?, ?, ?, ?, 'en', true, ?, false, false, ?, ?)" +
+            " ON CONFLICT (cognito_sub) DO UPDATE SET email = EXCLUDED.email," +
+            "  email_verified = EXCLUDED.email_verified, updated_at = EXCLUDED.updated_at" +
+            " WHERE app_users.email IS DISTINCT FROM EXCLUDED.email" +
+            "  OR app_users.email_verified IS DISTINCT FROM EXCLUDED.email_verified" +
+            " RETURNING id, (xmax = 0) AS created" +
+            "), existing AS (" +
+            " SELECT id, false AS created FROM app_users" +
+            " WHERE cognito_sub = ? AND NOT EXISTS (SELECT 1 FROM upsert)" +
+            "), target AS (" +
+            " SELECT id, created, true AS changed FROM upsert" +
+            " UNION ALL SELECT id, created, false AS changed FROM existing" +
+            "), default_role AS (" +
+            " INSERT INTO user_roles (user_id, role_id, assigned_by, assigned_at)" +
+            " SELECT t.id, ?::bigint, ?, ? FROM target t WHERE t.created AND ?::bigint IS NOT NULL" +
+            " ON CONFLICT (user_id, role_id) DO NOTHING" +
+            ") SELECT id, created, changed FROM target";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LocalCache<String, UserProfileDTO> userProfileCache;
+    private final RoleCatalog roleCatalog;
+    private final AuthorityIndex authorityIndex;
+
+    /**
+     * Outcome of provisioning: {@code changed} is true when the row was inserted or its
+     * identity columns were updated.
+     */
+    public record ProvisionedUser(Long id, boolean created, boolean changed) {}
+
+    /**
+     * Ensures a user row exists for {@code cognitoSub}. {@code username} and {@code displayName}
+     * are only used when the row is created; email and verification status are kept in sync.
+     */
+    @Transactional
+    public ProvisionedUser provision(String cognitoSub, String email, boolean emailVerified,
+                                     String username, String displayName) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Long defaultRoleId = roleCatalog.byName(DEFAULT_ROLE).map(RoleCatalog.RoleEntry::id).orElse(null);
+        // Held until commit: a concurrent first login for this sub waits and then finds the row
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, hashtext(?))", rs -> {}, PROVISION_LOCK_SPACE, cognitoSub);
+        List<ProvisionedUser> rows = jdbcTemplate.query(PROVISION_SQL,
+                (rs, i) -> new ProvisionedUser(rs.getLong("id"), rs.getBoolean("created"), rs.getBoolean("changed")),
+                cognitoSub, email, username, displayName, emailVerified, now, now,
+                cognitoSub,
+                defaultRoleId, email, now, defaultRoleId);
+
+        if (rows.isEmpty()) {
+            // The row was committed by a concurrent login after this statement's snapshot was
+            // taken: the conflict saw it, the plain SELECT did not. A new statement does.
+            Long id = jdbcTemplate.queryForObject("SELECT id FROM app_users WHERE cognito_sub = ?",
+                    Long.class, cognitoSub);
+            return new ProvisionedUser(id, false, false);
+        }
+
+        ProvisionedUser user = rows.get(0);
+        if (user.created()) {
+            log.info("Provisioned new user {} for cognitoSub: {}", email, cognitoSub);
+            authorityIndex.reloadAfterCommit(user.id());
+        }
+        if (user.changed()) {
+            userProfileCache.invalidateAfterCommit(cognitoSub);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,66 @@
+package com.staffmanagement.authservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Trigram indexes behind the admin user search. {@code pg_trgm} GIN indexes on the lowercased
+ * username, email and display name serve both {@code LIKE '%q%'} and similarity ({@code %})
+ * matches, so search no longer scans the table.
+ * <p>
+ * Creating the extension needs a privileged role. Without it, search falls back to unranked
+ * {@code LIKE} matching.
+ * <p>
+ * The indexes are built {@code CONCURRENTLY}, outside any transaction, so logins and
+ * provisioning keep writing to {@code app_users} during the build. A build that failed (for
+ * example on a restart mid-build) leaves an invalid index behind; it is dropped and rebuilt.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserSearchIndexService implements CommandLineRunner {
+
+    private static final String[] SEARCH_COLUMNS = {"username", "email", "display_name"};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean trigramAvailable;
+
+    @Override
+    public void run(String... args) {
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        } catch (DataAccessException e) {
+            log.warn("pg_trgm is not available, user search falls back to LIKE: {}", e.getMessage());
+        }
+        trigramAvailable = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm')", Boolean.class));
+        if (!trigramAvailable) return;
+
+        for (String column : SEARCH_COLUMNS) {
+            String index = "idx_app_users_" + column + "_trgm";
+            try {
+                if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                        "SELECT EXISTS (SELECT 1 FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+                        "WHERE c.relname = ? AND NOT i.indisvalid)", Boolean.class, index))) {
+                    log.warn("Dropping invalid index {} left by an interrupted build", index);
+                    jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+                }
+                jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + index + " " +
+                        "ON app_users USING gin (lower(" + column + ") gin_trgm_ops)");
+            } catch (DataAccessException e) {
+                // E.g. another instance building the same index right now
+                log.warn("Could not build {}, search on {} stays unindexed for now: {}", index, column, e.getMessage());
+            }
+        }
+        log.info("User search trigram indexes ready");
+    }
+
+    public boolean trigramAvailable() {
+        return trigramAvailable;
+    }
+}
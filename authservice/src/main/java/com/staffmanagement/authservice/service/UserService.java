@@ -5,16 +5,18 @@ import com.staffmanagement.authservice.dto.response.UserProfileDTO;
 import com.staffmanagement.authservice.entity.AppUser;
 import com.staffmanagement.authservice.entity.Role;
 import com.staffmanagement.authservice.repository.AppUserRepository;
-import com.staffmanagement.authservice.repository.RoleRepository;
-import com.staffmanagement.authservice.repository.UserRoleRepository;
-import com.staffmanagement.authservice.entity.UserRole;
+import com.staffmanagement.authservice.utils.ETags;
+import com.staffmanagement.authservice.utils.LocalCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -25,73 +27,87 @@ import java.util.stream.Collectors;
 public class UserService {
 
     private final AppUserRepository appUserRepository;
-    private final RoleRepository roleRepository;
-    private final UserRoleRepository userRoleRepository;
     private final CognitoAdminService cognitoAdminService;
+    private final LastSeenTracker lastSeenTracker;
+    private final UserProvisioningService userProvisioningService;
+    private final LocalCache<String, SyncedClaims> jwtSyncCache;
+    private final LocalCache<String, UserProfileDTO> userProfileCache;
+    private final TransactionTemplate transactionTemplate;
 
     /**
-     * Get current user profile
+     * Get current user profile.
+     * Served from the profile cache; last login is merged fresh on every call and the
+     * caller gets its own copy.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public UserProfileDTO getCurrentUser(String cognitoSub) {
-        AppUser user = appUserRepository.findByCognitoSub(cognitoSub)
-        
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        return convertToDTO(user);
+        UserProfileDTO cached = cachedProfile(cognitoSub);
+
+        return cached.toBuilder()
+                .roles(List.copyOf(cached.getRoles()))
+                .lastLoginAt(lastSeenTracker.lastSeen(cached.getId(), cached.getLastLoginAt()))
+                .build();
     }
 
     /**
-     * Create or update user from JWT token
+     * Validators for the profile, available without building the response DTO.
+     * Last login is deliberately left out, which makes the ETag weak.
      */
+    public record ProfileVersion(String etag, long lastModifiedMillis) {}
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ProfileVersion profileVersion(String cognitoSub) {
+        UserProfileDTO cached = cachedProfile(cognitoSub);
+        LocalDateTime updatedAt = cached.getUpdatedAt();
+        return new ProfileVersion(
+                ETags.weak(cached.getId(), updatedAt, cached.getRoleVersion()),
+                updatedAt == null ? -1 : updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    private UserProfileDTO cachedProfile(String cognitoSub) {
+        return userProfileCache.get(cognitoSub, sub -> transactionTemplate.execute(status ->
+                convertToDTO(appUserRepository.findWithRolesByCognitoSub(sub)
+                        .orElseThrow(() -> new RuntimeException("User not found")))));
+    }
+
+    /**
+     * Claims of the last token synced for a user. The fingerprint covers sub, email,
+     * email_verified and iat, so a repeated token matches and a new one does not.
+     */
+    public record SyncedClaims(Long userId, String fingerprint) {}
+
+    /**
+     * Create or update user from JWT token.
+     * A token whose claims were already synced skips the database entirely; otherwise the
+     * user is provisioned with one upsert that only writes when email or verification status
+     * actually changed.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void createOrUpdateUserFromJwt(Jwt jwt) {
         String cognitoSub = jwt.getClaimAsString("sub");
         String email = jwt.getClaimAsString("email");
-        Boolean emailVerified = jwt.getClaimAsBoolean("email_verified");
-
-        AppUser user = appUserRepository.findByCognitoSub(cognitoSub)
-                .orElseGet(() -> {
-                    log.info("Creating new user for cognitoSub: {}", cognitoSub);
-                    AppUser created = AppUser.builder()
-                            .cognitoSub(cognitoSub)
-                            .email(email)
-                            .emailVerified(emailVerified != null && emailVerified)
-                            .isActive(true)
-                            .build();
-
-                    AppUser saved = appUserRepository.save(created);
-
-                    // Assign default USER role if present
-                    try {
-                        roleRepository.findByRoleName("USER").ifPresent(role -> {
-                            if (userRoleRepository.findByUserAndRole(saved, role).isEmpty()) {
-                                UserRole ur = new UserRole();
-                                ur.setUser(saved);
-                                ur.setRole(role);
-                                ur.setAssignedBy(email);
-                                userRoleRepository.save(ur);
-                            }
-                        });
-                    } catch (Exception ex) {
-                        log.warn("Failed to assign default role to new user {}: {}", email, ex.getMessage());
-                    }
-
-                    return saved;
-                });
-
-        // Update email and verification status on each login
-        user.setEmail(email);
-        user.setEmailVerified(emailVerified != null && emailVerified);
-        user.setLastLoginAt(LocalDateTime.now());
-
-        appUserRepository.save(user);
-        log.debug("User synced: {}", email);
+        boolean emailVerified = Boolean.TRUE.equals(jwt.getClaimAsBoolean("email_verified"));
+        String fingerprint = cognitoSub + '\n' + email + '\n' + emailVerified + '\n'
+                + (jwt.getIssuedAt() != null ? jwt.getIssuedAt().getEpochSecond() : "");
+
+        SyncedClaims synced = jwtSyncCache.get(cognitoSub);
+        if (synced != null && synced.fingerprint().equals(fingerprint)) {
+            lastSeenTracker.touch(synced.userId());
+            return;
+        }
+
+        UserProvisioningService.ProvisionedUser user =
+                userProvisioningService.provision(cognitoSub, email, emailVerified, null, null);
+        // Only remember the claims once they are committed; a caller's transaction may still roll back
+        jwtSyncCache.putAfterCommit(cognitoSub, new SyncedClaims(user.id(), fingerprint));
+        lastSeenTracker.touch(user.id());
     }
 
     /**
      * Update user profile
      */
     public UserProfileDTO updateProfile(String cognitoSub, UpdateProfileRequest request) {
-        AppUser user = appUserRepository.findByCognitoSub(cognitoSub)
+        AppUser user = appUserRepository.findWithRolesByCognitoSub(cognitoSub)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Update fields
@@ -109,6 +125,7 @@ public class UserService {
         }
 
         AppUser savedUser = appUserRepository.save(user);
+        userProfileCache.invalidateAfterCommit(cognitoSub);
         log.info("Profile updated for user: {}", user.getEmail());
 
         return convertToDTO(savedUser);
@@ -118,15 +135,16 @@ public class UserService {
      * Toggle MFA for user
      */
     public UserProfileDTO toggleMfa(String cognitoSub, boolean enabled) {
-        AppUser user = appUserRepository.findByCognitoSub(cognitoSub)
+        AppUser user = appUserRepository.findWithRolesByCognitoSub(cognitoSub)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Update MFA preference in Cognito
-        cognitoAdminService.setUserMfaPreference(user.getEmail(), enabled);
+        cognitoAdminService.setUserMfaPreference(CognitoGroupMapping.cognitoUsername(user), enabled);
 
         // Update DB record
         user.setMfaEnabled(enabled);
         AppUser savedUser = appUserRepository.save(user);
+        userProfileCache.invalidateAfterCommit(cognitoSub);
         log.info("MFA {} for user: {}", enabled ? "enabled" : "disabled", user.getEmail());
 
         return convertToDTO(savedUser);
@@ -153,7 +171,9 @@ public class UserService {
             .isActive(user.isActive())
             .roles(roles)
             .createdAt(user.getCreatedAt())
-            .lastLoginAt(user.getLastLoginAt())
+            .lastLoginAt(lastSeenTracker.lastSeen(user.getId(), user.getLastLoginAt()))
+            .updatedAt(user.getUpdatedAt())
+            .roleVersion(user.getRoleVersion())
             .build();
 }
 
@@ -0,0 +1,32 @@
+package com.staffmanagement.authservice.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Builds entity tags for conditional GETs from the values a representation depends on.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * Weak ETag over the given parts: equal parts give an equal tag, so the representation is
+     * semantically unchanged even if volatile fields such as last login differ.
+     */
+    public static String weak(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
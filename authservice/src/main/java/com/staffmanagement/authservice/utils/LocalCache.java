@@ -0,0 +1,258 @@
+package com.staffmanagement.authservice.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small in-process cache with a size bound (least recently used entries go first) and a
+ * time-to-live per entry. A single {@link ReentrantLock} guards the map; hold times are a
+ * few map operations, and unlike {@code synchronized} the lock does not pin virtual threads.
+ * <p>
+ * {@link #get(Object, Function)} loads misses single-flight: concurrent misses for one key
+ * wait for the first caller's load instead of each running their own.
+ */
+public class LocalCache<K, V> implements MetricsSource {
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+
+    private record Entry<V>(V value, long expiresAt) {}
+
+    public LocalCache(String name, int maxEntries, long ttlMillis) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true);
+    }
+
+    /**
+     * Returns the cached value, or null if absent or expired.
+     */
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (entry.expiresAt() - System.nanoTime() <= 0) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached value, loading it on a miss. Only one load per key runs at a time;
+     * other callers block on it and share its result or exception. A null result is not cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            coalescedLoads.incrementAndGet();
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+        loads.incrementAndGet();
+        try {
+            V loaded = loader.apply(key);
+            if (loaded != null) {
+                putIfStillLoading(key, mine, loaded);
+            }
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    // An invalidation during the load unregisters it: the value may predate the change
+    private void putIfStillLoading(K key, CompletableFuture<V> load, V value) {
+        lock.lock();
+        try {
+            if (loading.get(key) == load) {
+                put(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttlNanos / 1_000_000L);
+    }
+
+    /**
+     * Stores a value with its own time-to-live, capped at the cache's default TTL.
+     */
+    public void put(K key, V value, long ttlMillis) {
+        long ttl = Math.min(ttlMillis * 1_000_000L, ttlNanos);
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, System.nanoTime() + ttl));
+            if (entries.size() > maxEntries) {
+                Iterator<K> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        loading.remove(key);
+        lock.lock();
+        try {
+            if (entries.remove(key) != null) {
+                invalidations.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invalidates the entry if its value matches {@code stale}. The check does not count as a
+     * hit or move the entry in the eviction order.
+     */
+    public void invalidateIf(K key, Predicate<? super V> stale) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null || !stale.test(entry.value())) return;
+            entries.remove(key);
+            invalidations.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+        loading.remove(key);
+    }
+
+    /**
+     * Invalidates once the current transaction completes, so a concurrent load cannot read
+     * the old row and cache it again after the eviction. Without a transaction, invalidates now.
+     */
+    public void invalidateAfterCommit(K key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidate(key);
+            }
+        });
+    }
+
+    /**
+     * Stores a value once the current transaction commits, so a value written by a transaction
+     * that rolls back is never served. Without a transaction, stores now.
+     */
+    public void putAfterCommit(K key, V value) {
+        putAllAfterCommit(Map.of(key, value));
+    }
+
+    /**
+     * {@link #putAfterCommit} for many entries, with a single transaction callback.
+     */
+    public void putAllAfterCommit(Map<? extends K, ? extends V> values) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            values.forEach(this::put);
+            return;
+        }
+        Map<K, V> copy = new LinkedHashMap<>(values);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                copy.forEach(LocalCache.this::put);
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        loading.clear();
+        lock.lock();
+        try {
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return name;
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size());
+        metrics.put("maxEntries", maxEntries);
+        metrics.put("hits", h);
+        metrics.put("misses", m);
+        metrics.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        metrics.put("evictions", evictions.get());
+        metrics.put("expirations", expirations.get());
+        metrics.put("invalidations", invalidations.get());
+        metrics.put("loads", loads.get());
+        metrics.put("coalescedLoads", coalescedLoads.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,19 @@
+package com.staffmanagement.authservice.utils;
+
+import java.util.Map;
+
+/**
+ * A component that publishes runtime counters on the admin metrics endpoint.
+ */
+public interface MetricsSource {
+
+    /**
+     * Section name under which the metrics are grouped.
+     */
+    String metricsName();
+
+    /**
+     * Point-in-time snapshot of the component's counters.
+     */
+    Map<String, Object> metrics();
+}
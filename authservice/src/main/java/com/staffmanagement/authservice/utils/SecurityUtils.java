@@ -1,24 +1,23 @@
 package com.staffmanagement.authservice.utils;
 
 import com.staffmanagement.authservice.entity.AppUser;
-import com.staffmanagement.authservice.entity.Role;
 import com.staffmanagement.authservice.repository.AppUserRepository;
+import com.staffmanagement.authservice.security.AuthorityIndex;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Component;
 
 @Component
 public class SecurityUtils {
     private final AppUserRepository appUserRepository;
+    private final AuthorityIndex authorityIndex;
 
-    public SecurityUtils(AppUserRepository appUserRepository) {
+    public SecurityUtils(AppUserRepository appUserRepository, AuthorityIndex authorityIndex) {
         this.appUserRepository = appUserRepository;
+        this.authorityIndex = authorityIndex;
     }
 
     public boolean hasAdminRole(Jwt jwt) {
-        AppUser user = getCurrentUser(jwt);
-        return user != null && user.getRoles().stream()
-                .map(Role::getRoleName)
-                .anyMatch(roleName -> roleName.equals("ADMIN"));
+        return authorityIndex.hasRole(jwt.getSubject(), "ADMIN");
     }
 
     public AppUser getCurrentUser(Jwt jwt) {
@@ -0,0 +1,130 @@
+package com.staffmanagement.authservice.repository;
+
+import com.staffmanagement.authservice.dto.response.AdminUserDTO;
+import com.staffmanagement.authservice.entity.AppUser;
+import com.staffmanagement.authservice.entity.Role;
+import com.staffmanagement.authservice.entity.UserRole;
+import com.staffmanagement.authservice.security.AuthorityIndex;
+import com.staffmanagement.authservice.service.AdminUserService;
+import com.staffmanagement.authservice.service.CognitoGroupMapping;
+import com.staffmanagement.authservice.service.GroupSyncOutbox;
+import com.staffmanagement.authservice.service.LastSeenTracker;
+import com.staffmanagement.authservice.service.RoleCatalog;
+import com.staffmanagement.authservice.service.UserSearchIndexService;
+import com.staffmanagement.authservice.utils.LocalCache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks the number of statements behind the admin user pages with Hibernate statistics,
+ * so a lazy association touched per row shows up as a failing count. The pages are built by
+ * {@link AdminUserService} itself, including the DTO mapping.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+class AppUserRepositoryFetchPlanTest {
+
+    private static final int USERS = 15;
+    private static final int PAGE_SIZE = 10;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private UserRoleRepository userRoleRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private AdminUserService adminUserService;
+
+    @BeforeEach
+    void setUp() {
+        Role admin = persistRole("ADMIN");
+        Role staff = persistRole("STAFF");
+        for (int i = 0; i < USERS; i++) {
+            AppUser user = AppUser.builder()
+                    .cognitoSub("sub-" + i)
+                    .email("user" + i + "@example.com")
+                    .username("user" + i)
+                    .build();
+            entityManager.persist(user);
+            entityManager.persist(UserRole.builder().user(user).role(staff).build());
+            if (i % 3 == 0) {
+                entityManager.persist(UserRole.builder().user(user).role(admin).build());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        // Collaborators that do not take part in reading a page are mocked
+        adminUserService = new AdminUserService(appUserRepository, roleRepository, userRoleRepository,
+                mock(GroupSyncOutbox.class), new LastSeenTracker(jdbcTemplate),
+                new LocalCache<>("userProfileCache", 10, 60_000), mock(RoleCatalog.class),
+                mock(AuthorityIndex.class), mock(CognitoGroupMapping.class), mock(UserSearchIndexService.class));
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void adminPageLoadsUsersCountAndRoleNamesInThreeStatements() {
+        Page<AdminUserDTO> page = adminUserService.searchUsers(null, 0, PAGE_SIZE);
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        assertThat(page.getTotalElements()).isEqualTo(USERS);
+        assertThat(page.getContent()).flatExtracting(AdminUserDTO::getRoles).contains("ADMIN", "STAFF");
+        // Page, count and one role-name query for the whole page
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    void searchPageLoadsUsersCountAndRoleNamesInThreeStatements() {
+        Page<AdminUserDTO> page = adminUserService.searchUsers("user1", 0, 5);
+
+        // user1 and user10..user14
+        assertThat(page.getTotalElements()).isEqualTo(6);
+        assertThat(page.getContent()).allSatisfy(user -> assertThat(user.getRoles()).contains("STAFF"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    void singleUserLoadsWithRolesInOneStatement() {
+        AppUser user = appUserRepository.findWithRolesByCognitoSub("sub-0").orElseThrow();
+        List<String> names = user.getUserRoles().stream().map(ur -> ur.getRole().getRoleName()).sorted().toList();
+
+        assertThat(names).containsExactly("ADMIN", "STAFF");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private Role persistRole(String name) {
+        Role role = Role.builder().roleName(name).build();
+        entityManager.persist(role);
+        return role;
+    }
+}